@@ -0,0 +1,140 @@
+/**
+ *
+ */
+package com.deloitte.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import com.deloitte.domain.Person;
+import com.deloitte.service.BusinessClass;
+import com.deloitte.service.BusinessInterface;
+
+/**
+ * Time of a call to BusinessClass.sayHello(Person), which always throws, so
+ * that the after throwing logging advice runs on every call, and to
+ * BusinessClass.nameLength(Person), which returns normally, so that only the
+ * timing advice does some work:
+ * <ul>
+ * <li>unadvised: the plain class</li>
+ * <li>proxy: the JDK proxy of aop:config in ApplicationContext.xml, the
+ * LoggingAspect after throwing advice, logging at error level, and the
+ * MethodTimingAspect around advice</li>
+ * <li>proxyFactoryBean: businessClassProxy of ApplicationContext.xml, the
+ * LoggingAop throws advice in a ProxyFactoryBean around the proxy above, so
+ * LoggingAop, LoggingAspect and MethodTimingAspect</li>
+ * <li>woven: WovenLoggingAspect and WovenMethodTimingAspect, subclasses of
+ * LoggingAspect and MethodTimingAspect running the same advice as proxy, woven
+ * by AspectJ at load time (META-INF/aop.xml, ApplicationContext-woven.xml)</li>
+ * </ul>
+ * A class woven at load time is woven in the whole JVM, so main runs the woven
+ * mode in forks started with the AspectJ agent given by
+ * <code>-Daspectj.weaver</code>, and the others in forks without it. The forks
+ * run on the JVM of main, with -XX:-OmitStackTraceInFastThrow: otherwise the
+ * JIT soon throws a preallocated NullPointerException without stack trace,
+ * and sayHello stops measuring the exceptions the application really throws.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdviceBenchmark {
+
+	private static final String NO_FAST_THROW = "-XX:-OmitStackTraceInFastThrow";
+
+	@Param({ "unadvised", "proxy", "proxyFactoryBean", "woven" })
+	public String mode;
+
+	private ClassPathXmlApplicationContext context;
+	private BusinessInterface service;
+	private final Person person = new Person("Ravi", "Kiran", 122354234L);
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if ("unadvised".equals(mode)) {
+			service = new BusinessClass();
+		} else if ("woven".equals(mode)) {
+			context = new ClassPathXmlApplicationContext("ApplicationContext-woven.xml");
+			service = (BusinessInterface) context.getBean("businessClass");
+		} else {
+			context = new ClassPathXmlApplicationContext("ApplicationContext.xml");
+			service = (BusinessInterface) context.getBean("proxy".equals(mode) ? "businessClass"
+					: "businessClassProxy");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (context != null) {
+			context.close();
+		}
+	}
+
+	@Benchmark
+	public Object sayHello() {
+		try {
+			return service.sayHello(person);
+		} catch (NullPointerException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public int nameLength() {
+		return service.nameLength(person);
+	}
+
+	/**
+	 * Runs the proxy and the woven modes, each in forks with the right JVM
+	 * options. Takes the usual JMH options.
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final String weaver = System.getProperty("aspectj.weaver");
+		if (weaver == null) {
+			throw new IllegalArgumentException("-Daspectj.weaver must be the path of aspectjweaver.jar");
+		}
+		final CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		new Runner(options(commandLine, "proxies").param("mode", "unadvised", "proxy", "proxyFactoryBean")
+				.jvmArgsAppend(NO_FAST_THROW).build()).run();
+		final ChainedOptionsBuilder woven = options(commandLine, "woven").param("mode", "woven");
+		if (isModular()) {
+			// the weaver defines its closure classes through ClassLoader.defineClass
+			woven.jvmArgsAppend(NO_FAST_THROW, "-javaagent:" + weaver,
+					"--add-opens=java.base/java.lang=ALL-UNNAMED");
+		} else {
+			woven.jvmArgsAppend(NO_FAST_THROW, "-javaagent:" + weaver);
+		}
+		new Runner(woven.build()).run();
+	}
+
+	private static boolean isModular() {
+		return !System.getProperty("java.specification.version").startsWith("1.");
+	}
+
+	private static ChainedOptionsBuilder options(CommandLineOptions commandLine, String run) {
+		final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine)
+				.include(AdviceBenchmark.class.getName());
+		if (commandLine.getResult().hasValue()) {
+			// one result file per run
+			options.result(commandLine.getResult().get().replace(".json", "-" + run + ".json"));
+		}
+		return options;
+	}
+}
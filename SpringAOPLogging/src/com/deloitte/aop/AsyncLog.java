@@ -0,0 +1,124 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Log of an advice sending its events to the AsyncLogSink, the levels enabled
+ * are those of the commons-logging log it wraps. The arguments of an
+ * ExceptionLogMessage are rendered before the event is queued, the rest of the
+ * message by the writer thread of the sink.
+ */
+final class AsyncLog implements Log {
+
+	private final Log delegate;
+	private final String name;
+	private final AsyncLogSink sink;
+
+	private AsyncLog(Log delegate, String name, AsyncLogSink sink) {
+		this.delegate = delegate;
+		this.name = name;
+		this.sink = sink;
+	}
+
+	/**
+	 * The log of the given class, writing through the AsyncLogSink when one is
+	 * configured
+	 */
+	static Log getLog(Class<?> type) {
+		final Log delegate = LogFactory.getLog(type);
+		final AsyncLogSink sink = AsyncLogSink.get();
+		return sink == null ? delegate : new AsyncLog(delegate, type.getName(), sink);
+	}
+
+	private static Object snapshot(Object message) {
+		return message instanceof ExceptionLogMessage ? ((ExceptionLogMessage) message).snapshot() : message;
+	}
+
+	public boolean isTraceEnabled() {
+		return delegate.isTraceEnabled();
+	}
+
+	public boolean isDebugEnabled() {
+		return delegate.isDebugEnabled();
+	}
+
+	public boolean isInfoEnabled() {
+		return delegate.isInfoEnabled();
+	}
+
+	public boolean isWarnEnabled() {
+		return delegate.isWarnEnabled();
+	}
+
+	public boolean isErrorEnabled() {
+		return delegate.isErrorEnabled();
+	}
+
+	public boolean isFatalEnabled() {
+		return delegate.isFatalEnabled();
+	}
+
+	public void trace(Object message) {
+		trace(message, null);
+	}
+
+	public void trace(Object message, Throwable t) {
+		if (delegate.isTraceEnabled()) {
+			sink.publish("TRACE", name, snapshot(message), t);
+		}
+	}
+
+	public void debug(Object message) {
+		debug(message, null);
+	}
+
+	public void debug(Object message, Throwable t) {
+		if (delegate.isDebugEnabled()) {
+			sink.publish("DEBUG", name, snapshot(message), t);
+		}
+	}
+
+	public void info(Object message) {
+		info(message, null);
+	}
+
+	public void info(Object message, Throwable t) {
+		if (delegate.isInfoEnabled()) {
+			sink.publish("INFO", name, snapshot(message), t);
+		}
+	}
+
+	public void warn(Object message) {
+		warn(message, null);
+	}
+
+	public void warn(Object message, Throwable t) {
+		if (delegate.isWarnEnabled()) {
+			sink.publish("WARN", name, snapshot(message), t);
+		}
+	}
+
+	public void error(Object message) {
+		error(message, null);
+	}
+
+	public void error(Object message, Throwable t) {
+		if (delegate.isErrorEnabled()) {
+			sink.publish("ERROR", name, snapshot(message), t);
+		}
+	}
+
+	public void fatal(Object message) {
+		fatal(message, null);
+	}
+
+	public void fatal(Object message, Throwable t) {
+		if (delegate.isFatalEnabled()) {
+			sink.publish("FATAL", name, snapshot(message), t);
+		}
+	}
+}
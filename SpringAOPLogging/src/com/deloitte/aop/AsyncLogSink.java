@@ -0,0 +1,418 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Log events of the advice, written to a file by a background thread instead
+ * of on the thread of the failing business call. Enabled by
+ * <code>-Daop.log.file=path</code>, the events are then appended to that file
+ * instead of being passed to commons-logging. The levels are still those of
+ * the commons-logging configuration. When the file cannot be opened the advice
+ * log through commons-logging as before.
+ *
+ * The events go through a bounded lock free ring buffer of
+ * <code>-Daop.log.bufferSize</code> events (default 8192, rounded up to a
+ * power of two). When it is full, <code>-Daop.log.whenFull</code> decides:
+ * <ul>
+ * <li>drop (default, and when the policy is unknown): the event is dropped and
+ * counted</li>
+ * <li>block: the caller waits for room, unless the writer is not running</li>
+ * <li>sample: one event in <code>-Daop.log.sampleRate</code> (default 100)
+ * waits for room, the others are dropped</li>
+ * </ul>
+ * The writer drains the buffer in batches, encoded into a 64 KB buffer written
+ * to the file channel when it is full or the ring buffer is empty. Messages are
+ * rendered by the writer thread, after the advice returned: the caller must
+ * pass a message that does not change afterwards, see AsyncLog. An event that
+ * fails to render is lost and counted as a write error.
+ *
+ * The counters are registered over JMX as
+ * <code>com.deloitte.aop:type=AsyncLogSink</code>. Events still queued when
+ * the JVM exits are written by a shutdown hook, the events published once the
+ * sink is closing are dropped.
+ */
+public class AsyncLogSink implements AsyncLogSinkMBean {
+
+	enum Policy {
+		DROP, BLOCK, SAMPLE
+	}
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	private static final long IDLE_PARK_NANOS = 1000000L;
+
+	private static final long FULL_PARK_NANOS = 50000L;
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private static final AsyncLogSink INSTANCE = create();
+
+	private final File file;
+	private final Policy policy;
+	private final int sampleRate;
+
+	private final int mask;
+	private final AtomicReferenceArray<Event> slots;
+	/**
+	 * Vyukov sequences: slot i is free for the producer of position p when its
+	 * sequence is p, and holds the event of position p when it is p + 1
+	 */
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final AtomicLong fullCount = new AtomicLong();
+	private volatile long written;
+	private volatile long bytesWritten;
+	private volatile long flushes;
+	private volatile long writeErrors;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	AsyncLogSink(File file, int capacity, Policy policy, int sampleRate) throws IOException {
+		if (capacity < 1 || sampleRate < 1) {
+			throw new IllegalArgumentException("The buffer size and the sample rate must be positive");
+		}
+		this.file = file;
+		this.policy = policy;
+		this.sampleRate = sampleRate;
+		final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+		this.mask = size - 1;
+		this.slots = new AtomicReferenceArray<Event>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		this.channel = new FileOutputStream(file, true).getChannel();
+		this.writer = new Thread(new Runnable() {
+
+			public void run() {
+				try {
+					drain();
+				} finally {
+					closeChannel();
+				}
+			}
+		}, "aop-log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * The sink configured by the system properties, null when
+	 * <code>aop.log.file</code> is not set
+	 */
+	static AsyncLogSink get() {
+		return INSTANCE;
+	}
+
+	private static AsyncLogSink create() {
+		final String path = System.getProperty("aop.log.file");
+		if (path == null || path.length() == 0) {
+			return null;
+		}
+		final AsyncLogSink sink;
+		try {
+			sink = new AsyncLogSink(new File(path), Integer.getInteger("aop.log.bufferSize", 8192).intValue(),
+					policy(System.getProperty("aop.log.whenFull", "drop")),
+					Integer.getInteger("aop.log.sampleRate", 100).intValue());
+		} catch (IOException e) {
+			System.err.println("Cannot open the aspect log " + path + ", the advice log synchronously: " + e);
+			return null;
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid settings of the aspect log " + path + ", the advice log synchronously: " + e);
+			return null;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+			public void run() {
+				sink.close();
+			}
+		}, "aop-log-shutdown"));
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(sink,
+					new ObjectName("com.deloitte.aop:type=AsyncLogSink"));
+		} catch (JMException e) {
+			// the sink works without its counters
+		}
+		return sink;
+	}
+
+	/**
+	 * The policy of the given name, drop when there is none, so that a typo in
+	 * the settings does not fail the advice
+	 */
+	private static Policy policy(String name) {
+		try {
+			return Policy.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.err.println("Unknown aop.log.whenFull policy " + name + ", the events are dropped when the aspect"
+					+ " log buffer is full");
+			return Policy.DROP;
+		}
+	}
+
+	/**
+	 * Queues the event, or drops it as the policy says when the buffer is
+	 * full. Once the sink is closing the event is dropped.
+	 */
+	void publish(String level, String logger, Object message, Throwable exception) {
+		if (!running) {
+			dropped.increment();
+			return;
+		}
+		final Event event = new Event(System.currentTimeMillis(), level, Thread.currentThread().getName(), logger,
+				message, exception);
+		if (offer(event)) {
+			published.increment();
+			return;
+		}
+		if (policy == Policy.DROP || policy == Policy.SAMPLE && fullCount.incrementAndGet() % sampleRate != 0) {
+			dropped.increment();
+			return;
+		}
+		while (!offer(event)) {
+			if (!running || !writer.isAlive()) {
+				dropped.increment();
+				return;
+			}
+			LockSupport.parkNanos(FULL_PARK_NANOS);
+		}
+		published.increment();
+	}
+
+	private boolean offer(Event event) {
+		while (true) {
+			final long position = tail.get();
+			final int index = (int) position & mask;
+			final long sequence = sequences.get(index);
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots.lazySet(index, event);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				// the slot still holds the event of the previous lap
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Next event, null when none is ready, called by the writer only
+	 */
+	private Event poll() {
+		final long position = head.get();
+		final int index = (int) position & mask;
+		if (sequences.get(index) != position + 1) {
+			return null;
+		}
+		final Event event = slots.get(index);
+		slots.lazySet(index, null);
+		sequences.set(index, position + mask + 1);
+		head.lazySet(position + 1);
+		return event;
+	}
+
+	private void drain() {
+		while (true) {
+			final Event event = poll();
+			if (event != null) {
+				try {
+					append(event);
+				} catch (Throwable e) {
+					// the event is lost, not the writer
+					failed("Failed to render an event of the aspect log " + file + ", it is lost: ", e);
+				}
+				continue;
+			}
+			flush();
+			if (!running && tail.get() == head.get()) {
+				return;
+			}
+			LockSupport.parkNanos(IDLE_PARK_NANOS);
+		}
+	}
+
+	private void append(Event event) {
+		final byte[] bytes = event.render(dateFormat).getBytes(UTF_8);
+		if (bytes.length > buffer.remaining()) {
+			flush();
+		}
+		if (bytes.length > buffer.capacity()) {
+			write(ByteBuffer.wrap(bytes));
+		} else {
+			buffer.put(bytes);
+		}
+		written++;
+	}
+
+	private void flush() {
+		if (buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		write(buffer);
+		buffer.clear();
+		flushes++;
+	}
+
+	private void write(ByteBuffer bytes) {
+		try {
+			while (bytes.hasRemaining()) {
+				bytesWritten += channel.write(bytes);
+			}
+		} catch (IOException e) {
+			failed("Failed to write the aspect log " + file + ", the events are lost: ", e);
+		}
+	}
+
+	/**
+	 * Counts a write error, only the first one is reported
+	 */
+	private void failed(String message, Throwable e) {
+		if (writeErrors++ == 0) {
+			System.err.println(message + e);
+		}
+	}
+
+	/**
+	 * Stops accepting events, and waits at most 5 seconds for the writer to
+	 * write the queued ones. The writer closes the file once it is done, even
+	 * after the wait.
+	 */
+	void close() {
+		running = false;
+		LockSupport.unpark(writer);
+		try {
+			writer.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (writer.isAlive()) {
+			System.err.println("The aspect log " + file + " is still being written, " + getQueued()
+					+ " events are queued");
+		}
+	}
+
+	/**
+	 * Closes the file, called by the writer when it ends
+	 */
+	private void closeChannel() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("Failed to close the aspect log " + file + ": " + e);
+		}
+	}
+
+	public String getFile() {
+		return file.getPath();
+	}
+
+	public String getPolicy() {
+		return policy.name().toLowerCase();
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	public long getQueued() {
+		return Math.max(0, tail.get() - head.get());
+	}
+
+	public long getPublished() {
+		return published.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	public long getWritten() {
+		return written;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public long getFlushes() {
+		return flushes;
+	}
+
+	public long getWriteErrors() {
+		return writeErrors;
+	}
+
+	/**
+	 * Log event, rendered by the writer
+	 */
+	private static final class Event {
+
+		private final long time;
+		private final String level;
+		private final String thread;
+		private final String logger;
+		private final Object message;
+		private final Throwable exception;
+
+		Event(long time, String level, String thread, String logger, Object message, Throwable exception) {
+			this.time = time;
+			this.level = level;
+			this.thread = thread;
+			this.logger = logger;
+			this.message = message;
+			this.exception = exception;
+		}
+
+		String render(SimpleDateFormat dateFormat) {
+			final StringBuilder line = new StringBuilder(256);
+			line.append(dateFormat.format(new Date(time))).append(' ').append(level).append(" [").append(thread)
+					.append("] ").append(logger).append(" - ");
+			try {
+				line.append(message);
+			} catch (RuntimeException e) {
+				line.append("Failed to render the message: ").append(e);
+			}
+			line.append(LINE_SEPARATOR);
+			if (exception != null) {
+				final StringWriter stackTrace = new StringWriter();
+				exception.printStackTrace(new PrintWriter(stackTrace));
+				line.append(stackTrace);
+			}
+			return line.toString();
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+/**
+ * JMX view of the AsyncLogSink the advice log to
+ */
+public interface AsyncLogSinkMBean {
+
+	String getFile();
+
+	String getPolicy();
+
+	int getCapacity();
+
+	long getQueued();
+
+	long getPublished();
+
+	long getDropped();
+
+	long getWritten();
+
+	long getBytesWritten();
+
+	long getFlushes();
+
+	long getWriteErrors();
+}
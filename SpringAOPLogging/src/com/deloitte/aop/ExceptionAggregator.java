@@ -0,0 +1,298 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Counts the exceptions thrown by the advised methods by fingerprint: the
+ * exception class, the throw site (the top frame of its stack trace) and the
+ * advised method. The first occurrence of a fingerprint is logged in full by
+ * the advice, the following ones are only counted and summarized in a single
+ * log entry every <code>-Daop.log.interval</code> milliseconds (default 10000,
+ * 0 for no summary).
+ *
+ * At most <code>-Daop.log.maxFingerprints</code> fingerprints (default 1000)
+ * are kept: when a new one goes over, the fingerprint seen least recently,
+ * found by a scan of them all, is evicted. Its occurrences not summarized yet
+ * are reported as evicted, and it is logged in full again when it reappears.
+ * A repeated exception takes no lock, its count is a LongAdder; the lock is
+ * only taken to evict and to summarize. An occurrence counted by a thread
+ * while another evicts its fingerprint may be lost.
+ *
+ * Exceptions thrown without a stack trace, like the ones the JVM preallocates
+ * for hot code (-XX:+OmitStackTraceInFastThrow), have no throw site and share
+ * the fingerprint of their class and method.
+ */
+final class ExceptionAggregator {
+
+	private static final long INTERVAL_MILLIS = Long.getLong("aop.log.interval", 10000L).longValue();
+
+	private static final int MAX_FINGERPRINTS = Integer.getInteger("aop.log.maxFingerprints", 1000).intValue();
+
+	private static final ScheduledExecutorService SUMMARIES = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "exception-summary");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final Log logger;
+	private final boolean error;
+
+	private final ConcurrentMap<Fingerprint, Occurrences> occurrences = new ConcurrentHashMap<Fingerprint, Occurrences>();
+
+	/**
+	 * Taken to evict fingerprints and to summarize, guards the evicted counts
+	 * and the summary fields of the occurrences
+	 */
+	private final Object lock = new Object();
+
+	private long evictedFingerprints;
+	private long evictedOccurrences;
+
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/**
+	 * @param logger logger of the summaries
+	 * @param error whether the summaries are logged as errors, otherwise as
+	 *            info
+	 */
+	ExceptionAggregator(Log logger, boolean error) {
+		this.logger = logger;
+		this.error = error;
+	}
+
+	/**
+	 * Whether the repeated exceptions are summarized, otherwise they are only
+	 * logged the first time
+	 */
+	static boolean summarizes() {
+		return INTERVAL_MILLIS > 0;
+	}
+
+	/**
+	 * Counts an occurrence of the exception
+	 *
+	 * @return whether it is the first occurrence of its fingerprint, which the
+	 *         advice logs in full
+	 */
+	boolean record(JoinPointMetadata metadata, Throwable exception) {
+		final Fingerprint fingerprint = new Fingerprint(exception.getClass(), throwSite(exception), metadata);
+		Occurrences seen = occurrences.get(fingerprint);
+		if (seen == null) {
+			seen = occurrences.putIfAbsent(fingerprint, new Occurrences(fingerprint));
+		}
+		if (seen != null) {
+			seen.seenAgain();
+			return false;
+		}
+		if (occurrences.size() > MAX_FINGERPRINTS) {
+			evict(fingerprint);
+		}
+		if (summarizes() && scheduled.compareAndSet(false, true)) {
+			SUMMARIES.scheduleAtFixedRate(new Runnable() {
+
+				public void run() {
+					summarize();
+				}
+			}, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		return true;
+	}
+
+	/**
+	 * Evicts the fingerprints seen least recently, but the given new one, until
+	 * at most MAX_FINGERPRINTS are left
+	 */
+	private void evict(Fingerprint added) {
+		synchronized (lock) {
+			while (occurrences.size() > MAX_FINGERPRINTS) {
+				Map.Entry<Fingerprint, Occurrences> eldest = null;
+				for (Map.Entry<Fingerprint, Occurrences> entry : occurrences.entrySet()) {
+					if (entry.getKey() != added
+							&& (eldest == null || entry.getValue().lastSeen < eldest.getValue().lastSeen)) {
+						eldest = entry;
+					}
+				}
+				if (eldest == null) {
+					return;
+				}
+				if (occurrences.remove(eldest.getKey(), eldest.getValue())) {
+					evictedFingerprints++;
+					evictedOccurrences += eldest.getValue().unreported();
+				}
+			}
+		}
+	}
+
+	private static StackTraceElement throwSite(Throwable exception) {
+		final StackTraceElement[] stackTrace = exception.getStackTrace();
+		return stackTrace.length > 0 ? stackTrace[0] : null;
+	}
+
+	/**
+	 * Logs the occurrences counted since the last summary, most frequent
+	 * first, nothing when there is none
+	 */
+	void summarize() {
+		if (error ? !logger.isErrorEnabled() : !logger.isInfoEnabled()) {
+			return;
+		}
+		final List<Occurrences> repeated = new ArrayList<Occurrences>();
+		final long fingerprints;
+		final long evicted;
+		synchronized (lock) {
+			for (Occurrences seen : occurrences.values()) {
+				if (seen.takeUnreported() > 0) {
+					repeated.add(seen);
+				}
+			}
+			fingerprints = evictedFingerprints;
+			evicted = evictedOccurrences;
+			evictedFingerprints = 0;
+			evictedOccurrences = 0;
+		}
+		if (repeated.isEmpty() && evicted == 0) {
+			return;
+		}
+		Collections.sort(repeated, new Comparator<Occurrences>() {
+
+			public int compare(Occurrences o1, Occurrences o2) {
+				return o1.summarized < o2.summarized ? 1 : o1.summarized == o2.summarized ? 0 : -1;
+			}
+		});
+
+		final StringBuilder summary = new StringBuilder(128 + 160 * repeated.size());
+		summary.append("Exceptions thrown again since the last summary:");
+		for (Occurrences seen : repeated) {
+			summary.append("\n ").append(seen.summarized).append(" x ").append(seen.fingerprint).append(", ")
+					.append(seen.total).append(" in total");
+		}
+		if (evicted > 0) {
+			summary.append("\n ").append(evicted).append(" more in ").append(fingerprints)
+					.append(" fingerprints evicted before this summary");
+		}
+		if (error) {
+			logger.error(summary);
+		} else {
+			logger.info(summary);
+		}
+	}
+
+	/**
+	 * Exception class, throw site and advised method
+	 */
+	private static final class Fingerprint {
+
+		private final Class<?> type;
+		private final StackTraceElement site;
+		private final JoinPointMetadata metadata;
+		private final int hash;
+
+		Fingerprint(Class<?> type, StackTraceElement site, JoinPointMetadata metadata) {
+			this.type = type;
+			this.site = site;
+			this.metadata = metadata;
+			// the metadata is cached, one instance per method
+			this.hash = (type.hashCode() * 31 + (site == null ? 0 : site.hashCode())) * 31
+					+ System.identityHashCode(metadata);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Fingerprint)) {
+				return false;
+			}
+			final Fingerprint other = (Fingerprint) obj;
+			return type == other.type && metadata == other.metadata
+					&& (site == null ? other.site == null : site.equals(other.site));
+		}
+
+		@Override
+		public String toString() {
+			return type.getName() + " at " + (site == null ? "unknown site" : site) + " in "
+					+ metadata.declaringTypeName + "." + metadata.name + "()";
+		}
+	}
+
+	/**
+	 * Occurrences of a fingerprint. The count and the time last seen are
+	 * updated without lock, the other fields are guarded by the lock of the
+	 * aggregator.
+	 */
+	private static final class Occurrences {
+
+		final Fingerprint fingerprint;
+
+		private final LongAdder count = new LongAdder();
+
+		/**
+		 * System.currentTimeMillis() of the last occurrence, only written when
+		 * it changed
+		 */
+		volatile long lastSeen = System.currentTimeMillis();
+
+		/**
+		 * count at the last summary, the first occurrence was logged in full
+		 */
+		private long reported = 1;
+
+		/**
+		 * occurrences in the summary being logged, and count at that time
+		 */
+		long summarized;
+		long total;
+
+		Occurrences(Fingerprint fingerprint) {
+			this.fingerprint = fingerprint;
+			count.increment();
+		}
+
+		void seenAgain() {
+			count.increment();
+			final long now = System.currentTimeMillis();
+			if (now != lastSeen) {
+				lastSeen = now;
+			}
+		}
+
+		long unreported() {
+			return count.sum() - reported;
+		}
+
+		/**
+		 * Marks the occurrences since the last summary as reported
+		 */
+		long takeUnreported() {
+			final long current = count.sum();
+			summarized = current - reported;
+			total = current;
+			reported = current;
+			return summarized;
+		}
+	}
+}
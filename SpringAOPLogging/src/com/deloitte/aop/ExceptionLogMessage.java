@@ -0,0 +1,169 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+
+/**
+ * Log message of an exception thrown by an advised method. The message is only
+ * rendered when the logger calls toString, and the arguments are rendered with
+ * bounded sizes: at most <code>-Daop.log.maxArgs</code> arguments or elements
+ * (default 10), each cut to <code>-Daop.log.maxArgLength</code> characters
+ * (default 100).
+ */
+final class ExceptionLogMessage {
+
+	private static final int MAX_ARGS = Integer.getInteger("aop.log.maxArgs", 10).intValue();
+
+	private static final int MAX_ARG_LENGTH = Integer.getInteger("aop.log.maxArgLength", 100).intValue();
+
+	private final JoinPointMetadata metadata;
+	private final String kind;
+	private final Object[] args;
+	/**
+	 * arguments rendered by snapshot(), null until then
+	 */
+	private final String renderedArguments;
+	private final Object target;
+	private final Object proxy;
+	private final Throwable exception;
+
+	/**
+	 * @param kind join point kind, null when not known
+	 * @param proxy the proxy the method was called on, null when not known
+	 */
+	ExceptionLogMessage(JoinPointMetadata metadata, String kind, Object[] args, Object target, Object proxy,
+			Throwable exception) {
+		this(metadata, kind, args, null, target, proxy, exception);
+	}
+
+	private ExceptionLogMessage(JoinPointMetadata metadata, String kind, Object[] args, String renderedArguments,
+			Object target, Object proxy, Throwable exception) {
+		this.metadata = metadata;
+		this.kind = kind;
+		this.args = args;
+		this.renderedArguments = renderedArguments;
+		this.target = target;
+		this.proxy = proxy;
+		this.exception = exception;
+	}
+
+	/**
+	 * Copy of the message with the arguments already rendered, for a message
+	 * rendered later by another thread: the arguments may have changed by then,
+	 * and their toString must not run concurrently with the caller
+	 */
+	ExceptionLogMessage snapshot() {
+		if (renderedArguments != null) {
+			return this;
+		}
+		final StringBuilder arguments = new StringBuilder(64);
+		appendArguments(arguments);
+		return new ExceptionLogMessage(metadata, kind, null, arguments.toString(), target, proxy, exception);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder message = new StringBuilder(256);
+		if (kind != null) {
+			message.append("\n Join point kind : ").append(kind);
+		}
+		message.append("\n Signature declaring type : ").append(metadata.declaringTypeName);
+		message.append("\n Signature name : ").append(metadata.name);
+		message.append("\n Arguments : ");
+		if (renderedArguments != null) {
+			message.append(renderedArguments);
+		} else {
+			appendArguments(message);
+		}
+		if (target != null) {
+			message.append("\n Target class : ").append(target.getClass().getName());
+		}
+		if (proxy != null) {
+			message.append("\n This class : ").append(proxy.getClass().getName());
+		}
+		message.append("\n An exception has been thrown in ").append(metadata.name).append("() : ").append(exception);
+		message.append("\n Cause :").append(exception.getCause());
+		if (ExceptionAggregator.summarizes()) {
+			message.append("\n Further occurrences from the same site are counted and summarized");
+		}
+		return message.toString();
+	}
+
+	private void appendArguments(StringBuilder message) {
+		if (args == null) {
+			message.append("null");
+			return;
+		}
+		message.append('[');
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				message.append(", ");
+			}
+			if (i == MAX_ARGS) {
+				message.append("... ").append(args.length - i).append(" more");
+				break;
+			}
+			appendValue(message, args[i]);
+		}
+		message.append(']');
+	}
+
+	/**
+	 * Appends the value, arrays and collections element by element so that a
+	 * large one is not rendered in full before being cut
+	 */
+	private static void appendValue(StringBuilder message, Object value) {
+		if (value != null && value.getClass().isArray()) {
+			final int length = Array.getLength(value);
+			message.append('[');
+			for (int i = 0; i < length; i++) {
+				if (i > 0) {
+					message.append(", ");
+				}
+				if (i == MAX_ARGS) {
+					message.append("... ").append(length - i).append(" more");
+					break;
+				}
+				appendString(message, Array.get(value, i));
+			}
+			message.append(']');
+		} else if (value instanceof Collection<?>) {
+			final Collection<?> collection = (Collection<?>) value;
+			message.append('[');
+			int i = 0;
+			for (Object element : collection) {
+				if (i > 0) {
+					message.append(", ");
+				}
+				if (i == MAX_ARGS) {
+					message.append("... ").append(collection.size() - i).append(" more");
+					break;
+				}
+				appendString(message, element);
+				i++;
+			}
+			message.append(']');
+		} else {
+			appendString(message, value);
+		}
+	}
+
+	private static void appendString(StringBuilder message, Object value) {
+		final String string;
+		try {
+			string = String.valueOf(value);
+		} catch (RuntimeException e) {
+			// a failing toString must not replace the exception being logged
+			message.append(value.getClass().getName()).append("@").append(Integer.toHexString(System.identityHashCode(value)));
+			return;
+		}
+		if (string.length() <= MAX_ARG_LENGTH) {
+			message.append(string);
+		} else {
+			message.append(string, 0, MAX_ARG_LENGTH).append("...(").append(string.length()).append(" chars)");
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+
+/**
+ * Names of an advised method, looked up once per method instead of on every
+ * logged exception. There is one instance per method, ExceptionAggregator
+ * compares them by identity.
+ */
+final class JoinPointMetadata {
+
+	private static final ConcurrentMap<Object, JoinPointMetadata> CACHE = new ConcurrentHashMap<Object, JoinPointMetadata>();
+
+	final String declaringTypeName;
+	final String name;
+
+	private JoinPointMetadata(String declaringTypeName, String name) {
+		this.declaringTypeName = declaringTypeName;
+		this.name = name;
+	}
+
+	/**
+	 * Metadata of the method of the join point
+	 */
+	static JoinPointMetadata of(JoinPoint jp) {
+		final Object key = keyOf(jp);
+		JoinPointMetadata metadata = CACHE.get(key);
+		if (metadata == null) {
+			final Signature signature = jp.getSignature();
+			metadata = cache(key, new JoinPointMetadata(signature.getDeclaringTypeName(), signature.getName()));
+		}
+		return metadata;
+	}
+
+	/**
+	 * Key identifying the advised method of the join point in caches
+	 */
+	static Object keyOf(JoinPoint jp) {
+		final Signature signature = jp.getSignature();
+		// Spring creates a join point per call, the method identifies it
+		return signature instanceof MethodSignature ? ((MethodSignature) signature).getMethod() : jp.getStaticPart();
+	}
+
+	/**
+	 * Metadata of the method
+	 */
+	static JoinPointMetadata of(Method method) {
+		JoinPointMetadata metadata = CACHE.get(method);
+		if (metadata == null) {
+			metadata = cache(method, new JoinPointMetadata(method.getDeclaringClass().getName(), method.getName()));
+		}
+		return metadata;
+	}
+
+	private static JoinPointMetadata cache(Object key, JoinPointMetadata metadata) {
+		final JoinPointMetadata previous = CACHE.putIfAbsent(key, metadata);
+		return previous == null ? metadata : previous;
+	}
+}
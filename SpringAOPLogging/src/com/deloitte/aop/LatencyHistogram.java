@@ -0,0 +1,114 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations in nanoseconds. Each power of two is split
+ * into 8 buckets, so a percentile is off by at most 12.5%. Durations above
+ * 2^40 ns (about 18 minutes) are counted in the last bucket.
+ *
+ * The buckets are striped: each thread counts in the set of buckets picked by
+ * its id, so that threads timing the same method seldom update the same
+ * counters.
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	/**
+	 * Number of sets of buckets, the power of two at or above the number of
+	 * processors
+	 */
+	private static final int STRIPES = stripes();
+
+	private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long nanos) {
+		final long value = Math.max(0, nanos);
+		counts.incrementAndGet(stripe() * BUCKETS + index(value));
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Upper bound of the bucket holding the given percentile (0 to 100) of the
+	 * recorded durations, 0 when none was recorded
+	 */
+	long percentile(double percentile) {
+		final long[] buckets = new long[BUCKETS];
+		long total = 0;
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			for (int i = 0; i < BUCKETS; i++) {
+				final long count = counts.get(stripe * BUCKETS + i);
+				buckets[i] += count;
+				total += count;
+			}
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		max.set(0);
+	}
+
+	private static int stripes() {
+		final int processors = Math.min(64, Runtime.getRuntime().availableProcessors());
+		return Integer.highestOneBit(processors) == processors ? processors : Integer.highestOneBit(processors) << 1;
+	}
+
+	/**
+	 * Set of buckets of the calling thread
+	 */
+	private static int stripe() {
+		return (int) Thread.currentThread().getId() & (STRIPES - 1);
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long upperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		final long subBucket = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
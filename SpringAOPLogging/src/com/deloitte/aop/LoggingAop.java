@@ -1,22 +1,42 @@
 package com.deloitte.aop;
 
 import java.lang.reflect.Method;
-import java.util.Arrays;
 
 import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.springframework.aop.ThrowsAdvice;
 
 public class LoggingAop implements ThrowsAdvice {
 
-	private static Log logger = LogFactory.getLog(LoggingAop.class);
+	private static Log logger = AsyncLog.getLog(LoggingAop.class);
+
+	private static final ExceptionAggregator exceptions = new ExceptionAggregator(logger, true);
+
+	/**
+	 * Called by Spring, which only looks for throws advice methods named
+	 * afterThrowing
+	 */
+	public void afterThrowing(Method method, Object[] args, Object target,
+			Exception exception) throws Throwable {
+		log(method, args, target, exception);
+	}
 
 	public void log(Method method, Object[] args, Object object,
 			Exception exception) throws Throwable {
-		logger.debug("Inside LoggingAop");
 
-		logger.error(" Method : " + method.getName() + " called on "
-				+ object.getClass() + "Arguments : " + Arrays.toString(args));
-		logger.debug("Exiting LogginAspectAnnotationDriven");
+		if (!logger.isErrorEnabled()) {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Inside LoggingAop");
+		}
+
+		final JoinPointMetadata metadata = JoinPointMetadata.of(method);
+		if (exceptions.record(metadata, exception)) {
+			logger.error(new ExceptionLogMessage(metadata, null, args, object, null, exception), exception);
+		}
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Exiting LoggingAop");
+		}
 	}
 }
@@ -3,32 +3,32 @@
  */
 package com.deloitte.aop;
 
-import java.util.Arrays;
-
 import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.Signature;
 
 public class LoggingAspect {
 
-	private static Log logger = LogFactory.getLog(LoggingAspect.class);
-
-	public void log(JoinPoint jp, Throwable exception) throws Throwable {
+	private static Log logger = AsyncLog.getLog(LoggingAspect.class);
 
-		logger.debug("Inside LogginAspectAnnotationDriven");
+	private static final ExceptionAggregator exceptions = new ExceptionAggregator(logger, true);
 
-		logger.error("\n Join point kind : " + jp.getKind()
-				+ "\n Signature declaring type : "
-				+ jp.getSignature().getDeclaringTypeName()
-				+ "\n Signature name : " + jp.getSignature().getName()
-				+ "\n Arguments : " + Arrays.toString(jp.getArgs())
-				+ "\n Target class : " + jp.getTarget().getClass().getName()
-				+ "\n This class : " + jp.getThis().getClass().getName()
-				+ "\n An exception has been thrown in "
-				+ jp.getSignature().getName() + "() \n Cause :"
-				+ exception.getCause());
+	public void log(JoinPoint jp, Throwable exception) throws Throwable {
 
-		logger.debug("Exiting LogginAspectAnnotationDriven");
+		if (!logger.isErrorEnabled()) {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Inside LoggingAspect");
+		}
+
+		final JoinPointMetadata metadata = JoinPointMetadata.of(jp);
+		if (exceptions.record(metadata, exception)) {
+			logger.error(new ExceptionLogMessage(metadata, jp.getKind(), jp.getArgs(), jp.getTarget(), jp.getThis(),
+					exception), exception);
+		}
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Exiting LoggingAspect");
+		}
 	}
 }
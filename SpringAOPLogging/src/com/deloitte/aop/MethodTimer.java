@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.CodeSignature;
+
+/**
+ * Call count, error count and latency histogram of one advised method, updated
+ * by the MethodTimingAspect.
+ */
+public class MethodTimer implements MethodTimerMBean {
+
+	private final String signature;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder sampledCalls = new LongAdder();
+	private final LongAdder sampledNanos = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	MethodTimer(String signature) {
+		this.signature = signature;
+	}
+
+	/**
+	 * <code>package.Type.method(package.ParameterType, ...)</code>, with the
+	 * fully qualified names of the declaring type and of the parameter types,
+	 * which tell apart the types of the same name in different packages and the
+	 * overloaded methods
+	 */
+	static String signatureOf(Signature signature) {
+		final StringBuilder name = new StringBuilder();
+		name.append(signature.getDeclaringTypeName()).append('.').append(signature.getName()).append('(');
+		if (signature instanceof CodeSignature) {
+			final Class<?>[] parameterTypes = ((CodeSignature) signature).getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				name.append(i == 0 ? "" : ", ").append(parameterTypes[i].getName());
+			}
+		}
+		return name.append(')').toString();
+	}
+
+	void called() {
+		calls.increment();
+	}
+
+	void failed() {
+		errors.increment();
+	}
+
+	void sampled(long nanos) {
+		sampledCalls.increment();
+		sampledNanos.add(nanos);
+		latency.record(nanos);
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	public long getSampledCalls() {
+		return sampledCalls.sum();
+	}
+
+	public long getMeanMicros() {
+		final long count = sampledCalls.sum();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(sampledNanos.sum() / count);
+	}
+
+	public long getP50Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(latency.percentile(50));
+	}
+
+	public long getP90Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(latency.percentile(90));
+	}
+
+	public long getP99Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(latency.percentile(99));
+	}
+
+	public long getP999Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(latency.percentile(99.9));
+	}
+
+	public long getMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(latency.max());
+	}
+
+	public void reset() {
+		calls.reset();
+		errors.reset();
+		sampledCalls.reset();
+		sampledNanos.reset();
+		latency.reset();
+	}
+
+	@Override
+	public String toString() {
+		return signature + " calls=" + getCalls() + " errors=" + getErrors() + " sampled=" + getSampledCalls()
+				+ " mean=" + getMeanMicros() + "us p50/p90/p99/p99.9/max=" + getP50Micros() + "/" + getP90Micros()
+				+ "/" + getP99Micros() + "/" + getP999Micros() + "/" + getMaxMicros() + "us";
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+/**
+ * JMX view of the MethodTimer of an advised method. Durations are in
+ * microseconds and computed from the sampled calls.
+ */
+public interface MethodTimerMBean {
+
+	String getSignature();
+
+	long getCalls();
+
+	long getErrors();
+
+	long getSampledCalls();
+
+	long getMeanMicros();
+
+	long getP50Micros();
+
+	long getP90Micros();
+
+	long getP99Micros();
+
+	long getP999Micros();
+
+	long getMaxMicros();
+
+	void reset();
+}
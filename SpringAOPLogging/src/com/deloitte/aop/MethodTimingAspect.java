@@ -0,0 +1,203 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.aspectj.lang.ProceedingJoinPoint;
+
+/**
+ * Around advice timing the advised methods. Each method gets a MethodTimer,
+ * found from the method in a map, registered over JMX as
+ * <code>com.deloitte.aop:type=MethodTiming,name="package.Type.method(...)"</code>
+ * and logged every <code>reportIntervalSeconds</code>.
+ *
+ * Every call is counted, one call in <code>sampleRate</code> of each thread is
+ * timed. The pointcut is set where the aspect is declared, see
+ * ApplicationContext.xml.
+ */
+public class MethodTimingAspect {
+
+	private static Log logger = AsyncLog.getLog(MethodTimingAspect.class);
+
+	private final ConcurrentMap<Object, MethodTimer> timers = new ConcurrentHashMap<Object, MethodTimer>();
+
+	private final ThreadLocal<int[]> untilSample = new ThreadLocal<int[]>() {
+
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private int sampleRate = 1;
+
+	private long reportIntervalSeconds = 60;
+
+	private String jmxDomain = "com.deloitte.aop";
+
+	private ScheduledExecutorService reporter;
+
+	public Object time(ProceedingJoinPoint pjp) throws Throwable {
+
+		final MethodTimer timer = timer(pjp);
+		timer.called();
+		if (!sample()) {
+			try {
+				return pjp.proceed();
+			} catch (Throwable e) {
+				timer.failed();
+				throw e;
+			}
+		}
+
+		final long start = System.nanoTime();
+		try {
+			return pjp.proceed();
+		} catch (Throwable e) {
+			timer.failed();
+			throw e;
+		} finally {
+			timer.sampled(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Whether the current call of the thread is timed
+	 */
+	private boolean sample() {
+		if (sampleRate == 1) {
+			return true;
+		}
+		final int[] countdown = untilSample.get();
+		if (--countdown[0] > 0) {
+			return false;
+		}
+		countdown[0] = sampleRate;
+		return true;
+	}
+
+	private MethodTimer timer(ProceedingJoinPoint pjp) {
+		final Object key = JoinPointMetadata.keyOf(pjp);
+		MethodTimer timer = timers.get(key);
+		if (timer == null) {
+			timer = new MethodTimer(MethodTimer.signatureOf(pjp.getSignature()));
+			final MethodTimer previous = timers.putIfAbsent(key, timer);
+			if (previous != null) {
+				return previous;
+			}
+			register(timer);
+		}
+		return timer;
+	}
+
+	private void register(MethodTimer timer) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(timer, objectName(timer));
+		} catch (JMException e) {
+			logger.warn("Timings of " + timer.getSignature() + " are not available over JMX", e);
+		}
+	}
+
+	private ObjectName objectName(MethodTimer timer) throws JMException {
+		return new ObjectName(jmxDomain + ":type=MethodTiming,name=" + ObjectName.quote(timer.getSignature()));
+	}
+
+	/**
+	 * Starts the periodic report, called by Spring once the properties are set
+	 */
+	public void init() {
+		if (sampleRate < 1) {
+			throw new IllegalArgumentException("sampleRate must be positive");
+		}
+		if (reportIntervalSeconds > 0) {
+			reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "method-timing-report");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			reporter.scheduleAtFixedRate(new Runnable() {
+
+				public void run() {
+					report();
+				}
+			}, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Logs the timings of the methods called so far
+	 */
+	public void report() {
+		if (!logger.isInfoEnabled()) {
+			return;
+		}
+		for (MethodTimer timer : timers.values()) {
+			if (timer.getCalls() > 0) {
+				logger.info(timer);
+			}
+		}
+	}
+
+	/**
+	 * Stops the report and unregisters the timers from JMX, called by Spring
+	 */
+	public void destroy() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+		}
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (MethodTimer timer : timers.values()) {
+			try {
+				if (server.isRegistered(objectName(timer))) {
+					server.unregisterMBean(objectName(timer));
+				}
+			} catch (JMException e) {
+				logger.warn("Failed to unregister the timings of " + timer.getSignature(), e);
+			}
+		}
+	}
+
+	/**
+	 * Timers of the methods called so far
+	 */
+	public Iterable<MethodTimer> getTimers() {
+		return timers.values();
+	}
+
+	/**
+	 * One call in sampleRate of each thread is timed, default 1: every call
+	 */
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Seconds between two reports in the log, 0 for no report. Default 60
+	 */
+	public void setReportIntervalSeconds(long reportIntervalSeconds) {
+		this.reportIntervalSeconds = reportIntervalSeconds;
+	}
+
+	/**
+	 * JMX domain of the timers, default com.deloitte.aop
+	 */
+	public void setJmxDomain(String jmxDomain) {
+		this.jmxDomain = jmxDomain;
+	}
+}
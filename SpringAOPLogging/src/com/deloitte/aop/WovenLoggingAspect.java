@@ -0,0 +1,23 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * LoggingAspect woven into the service classes by AspectJ instead of applied
+ * through a proxy, see META-INF/aop.xml. Same pointcut as the aop:config of
+ * ApplicationContext.xml, the exceptions are logged as errors by the logger of
+ * LoggingAspect.
+ */
+@Aspect
+public class WovenLoggingAspect extends LoggingAspect {
+
+	@AfterThrowing(pointcut = "execution(public * *(..))", throwing = "exception")
+	public void logWoven(JoinPoint jp, Throwable exception) throws Throwable {
+		log(jp, exception);
+	}
+}
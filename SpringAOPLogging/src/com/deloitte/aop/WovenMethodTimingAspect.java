@@ -0,0 +1,23 @@
+/**
+ *
+ */
+package com.deloitte.aop;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * MethodTimingAspect woven into the service classes by AspectJ instead of
+ * applied through a proxy, see META-INF/aop.xml. The aspect is a singleton
+ * created by AspectJ, ApplicationContext-woven.xml configures it through
+ * aspectOf().
+ */
+@Aspect
+public class WovenMethodTimingAspect extends MethodTimingAspect {
+
+	@Around("execution(* com.deloitte.service.BusinessInterface+.*(..))")
+	public Object timeWoven(ProceedingJoinPoint pjp) throws Throwable {
+		return time(pjp);
+	}
+}
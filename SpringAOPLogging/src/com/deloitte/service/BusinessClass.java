@@ -27,4 +27,9 @@ public class BusinessClass implements BusinessInterface {
 		return tst.length();
 	}
 
+	public int nameLength(Person person) {
+		// not throwing, only the around advice does some work
+		return person.getFirstName().length();
+	}
+
 }
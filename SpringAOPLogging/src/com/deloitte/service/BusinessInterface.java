@@ -17,4 +17,6 @@ public interface BusinessInterface {
 	public int sayHello(List<String> nameList);
 	
 	public int sayHello(Person person);
+
+	public int nameLength(Person person);
 }
@@ -15,14 +15,17 @@ import com.deloitte.service.BusinessInterface;
 public class AOPTester {
 
 	/**
-	 * @param args
+	 * @param args "woven" to call the service woven by AspectJ, the JVM must
+	 *            then run with -javaagent:aspectjweaver.jar, and on Java 16
+	 *            and later --add-opens java.base/java.lang=ALL-UNNAMED
 	 */
 	public static void main(String[] args) {
 
+		final boolean woven = args.length > 0 && "woven".equals(args[0]);
 		ApplicationContext contex = new ClassPathXmlApplicationContext(
-				"ApplicationContext.xml");
+				woven ? "ApplicationContext-woven.xml" : "ApplicationContext.xml");
 		BusinessInterface tester = (BusinessInterface) contex
-				.getBean("businessClassProxy");
+				.getBean(woven ? "businessClass" : "businessClassProxy");
 		// int result=tester.sayHello("Rave");
 
 		/*
@@ -0,0 +1,85 @@
+package com.rave.batch;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Synthetic input files, embedded database and batch property injection shared
+ * by the benchmarks.
+ */
+final class BenchmarkSupport {
+
+	static final String MAPPING_FILE = "beanio/mappingFile.xml";
+
+	private BenchmarkSupport() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Writes a report.csv like file with the given number of records
+	 */
+	static File generateReportFile(int records) throws IOException {
+		final File file = File.createTempFile("report-", ".csv");
+		file.deleteOnExit();
+
+		final Random random = new Random(records);
+		final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try {
+			for(int i = 0; i < records; i++) {
+				final int impressions = random.nextInt(1000000);
+				out.write((1 + i % 12) + "/" + (1 + i % 28) + "/" + (2000 + i % 20));
+				out.write(",\"" + String.format("%,d", impressions) + "\",");
+				out.write(Integer.toString(random.nextInt(impressions + 1) / 100));
+				out.write("," + random.nextInt(100000) / 100 + "." + (10 + random.nextInt(90)) + "\r\n");
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * In-process H2 database with the report tables of db.sql
+	 */
+	static DataSource embeddedDatabase(String name) {
+		final SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+				"jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "", true);
+		dataSource.setAutoCommit(false);
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table if not exists raw_report(date varchar(20), impressions varchar(20), "
+				+ "clicks varchar(50), earnings varchar(50))");
+		jdbcTemplate.execute("create table if not exists typed_report(report_day int not null, "
+				+ "impressions bigint not null, clicks bigint not null, earnings_cents bigint not null)");
+		return dataSource;
+	}
+
+	static void truncateReports(DataSource dataSource) {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("truncate table raw_report");
+		jdbcTemplate.execute("truncate table typed_report");
+	}
+
+	/**
+	 * Sets a @BatchProperty field the way the batch runtime injects it
+	 */
+	static void setBatchProperty(Object artifact, String name, String value) {
+		try {
+			final Field field = artifact.getClass().getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(artifact, value);
+		} catch(ReflectiveOperationException e) {
+			throw new IllegalArgumentException("No batch property " + name + " on " + artifact.getClass(), e);
+		}
+	}
+}
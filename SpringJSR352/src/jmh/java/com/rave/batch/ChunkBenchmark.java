@@ -0,0 +1,114 @@
+package com.rave.batch;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.JobExecution;
+import javax.batch.runtime.Metric;
+import javax.batch.runtime.StepExecution;
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.batch.core.jsr.launch.JsrJobOperator;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.rave.BatchUtil;
+import com.rave.JobLauncherService;
+
+/**
+ * Runs job-report over a synthetic file through the JsrJobOperator, with the
+ * embedded and memory profiles: the partitions, listeners, processing, writer
+ * and checkpoints of a real run, with the chunk size fixed to
+ * <code>itemCount</code> by the job parameter of the same name. The records
+ * counter gives the end-to-end records per second. The partition threads of
+ * the runtime are not daemon threads, a fork only ends after the JMH shutdown
+ * timeout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChunkBenchmark {
+
+	private static final String JOB_NAME = "job-report";
+
+	/**
+	 * Database of the embedded profile, see baseContext.xml
+	 */
+	private static final String EMBEDDED_URL = "jdbc:h2:mem:test;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+	@Param({"100000"})
+	public int records;
+
+	@Param({"4", "100", "1000"})
+	public int itemCount;
+
+	@Param({"1"})
+	public int partitions;
+
+	private File file;
+	private JsrJobOperator jobOperator;
+	private JobLauncherService launcher;
+	private DataSource dataSource;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Counters {
+
+		public long records;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			records = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+		file = BenchmarkSupport.generateReportFile(records);
+		System.setProperty("spring.profiles.active", "embedded,memory");
+		System.setProperty("batch.partitions", Integer.toString(partitions));
+		// metrics are only reported when a step ends
+		System.setProperty("metrics.interval", "0");
+		jobOperator = new JsrJobOperator();
+		launcher = new JobLauncherService(jobOperator, 1, 1000, TimeUnit.HOURS.toMillis(1));
+		dataSource = new SingleConnectionDataSource(EMBEDDED_URL, "sa", "", true);
+	}
+
+	@Setup(Level.Iteration)
+	public void truncate() {
+		BenchmarkSupport.truncateReports(dataSource);
+	}
+
+	@Benchmark
+	public long runJob(Counters counters) throws Exception {
+		final Properties params = new Properties();
+		params.setProperty("filePath", file.getPath());
+		params.setProperty("itemCount", Integer.toString(itemCount));
+		final JobExecution execution = launcher.submit(BatchUtil.JobCommand.START, JOB_NAME, params).get();
+		if(execution.getBatchStatus() != BatchStatus.COMPLETED) {
+			throw new IllegalStateException("Job " + execution.getExecutionId() + " ended " + execution.getBatchStatus());
+		}
+
+		long written = 0;
+		for(StepExecution step : jobOperator.getStepExecutions(execution.getExecutionId())) {
+			for(Metric metric : step.getMetrics()) {
+				if(metric.getType() == Metric.MetricType.WRITE_COUNT) {
+					written += metric.getValue();
+				}
+			}
+		}
+		counters.records += written;
+		return written;
+	}
+}
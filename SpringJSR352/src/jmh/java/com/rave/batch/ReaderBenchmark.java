@@ -0,0 +1,71 @@
+package com.rave.batch;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parses a whole synthetic report file with the BeanIOItemReader. The records
+ * counter gives the records per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReaderBenchmark {
+
+	@Param({"100000"})
+	public int records;
+
+	@Param({"stream", "mapped"})
+	public String inputMode;
+
+	@Param({"reportCSVStream", "reportTypedCSVStream"})
+	public String streamName;
+
+	private File file;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Counters {
+
+		public long records;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			records = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void generate() throws Exception {
+		file = BenchmarkSupport.generateReportFile(records);
+	}
+
+	@Benchmark
+	public long readFile(Counters counters) throws Exception {
+		final BeanIOItemReader reader = new BeanIOItemReader(file.getPath(), streamName,
+				BenchmarkSupport.MAPPING_FILE, null);
+		BenchmarkSupport.setBatchProperty(reader, "inputMode", inputMode);
+		reader.open(null);
+		long read = 0;
+		try {
+			while(reader.readItem() != null) {
+				read++;
+			}
+		} finally {
+			reader.close();
+		}
+		counters.records += read;
+		return read;
+	}
+}
@@ -0,0 +1,87 @@
+package com.rave.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import com.rave.model.Report;
+
+/**
+ * Writes chunks of {@value #CHUNK} reports into the embedded database, one
+ * transaction per chunk, scored in rows per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WriterBenchmark {
+
+	static final int CHUNK = 1000;
+
+	@Param({"50", "500"})
+	public String batchSize;
+
+	@Param({"false", "true"})
+	public String multiRowInsert;
+
+	private DataSource dataSource;
+	private DataSourceTransactionManager transactionManager;
+	private DatabaseWriter writer;
+	private List<Object> items;
+
+	@Setup(Level.Trial)
+	public void open() throws Exception {
+		dataSource = BenchmarkSupport.embeddedDatabase("writer");
+		transactionManager = new DataSourceTransactionManager(dataSource);
+
+		writer = new DatabaseWriter();
+		writer.dataSource = dataSource;
+		BenchmarkSupport.setBatchProperty(writer, "batchSize", batchSize);
+		BenchmarkSupport.setBatchProperty(writer, "multiRowInsert", multiRowInsert);
+		writer.open(null);
+
+		items = new ArrayList<Object>(CHUNK);
+		for(int i = 0; i < CHUNK; i++) {
+			final Report report = new Report();
+			report.setDate((1 + i % 12) + "/1/2013");
+			report.setImpressions(Integer.toString(i * 31));
+			report.setClicks(Integer.toString(i));
+			report.setEarning(i + ".25");
+			items.add(report);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void truncate() {
+		BenchmarkSupport.truncateReports(dataSource);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() throws Exception {
+		writer.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK)
+	public void writeChunk() throws Exception {
+		final TransactionStatus transaction = transactionManager.getTransaction(new DefaultTransactionDefinition());
+		writer.writeItems(items);
+		transactionManager.commit(transaction);
+	}
+}
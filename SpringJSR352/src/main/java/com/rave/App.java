@@ -1,50 +1,123 @@
 package com.rave;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+import javax.batch.runtime.BatchStatus;
 import javax.batch.runtime.JobExecution;
 
 import org.springframework.batch.core.jsr.launch.JsrJobOperator;
 
 
+/**
+ * Runs job-report. Usage: <code>App [start|restart] [file ...]</code>, with one
+ * job started per file, up to <code>-Dlauncher.threads</code> (default: number
+ * of processors) at once. Without files the job reads its default file. A
+ * file can also be a directory or a quoted glob pattern, read by a single job
+ * with one partition per file.
+ *
+ * The time taken by each startup phase is printed at the end: JVM start up to
+ * main, creation of the operator and its base context, launch of a job and
+ * the run of all the jobs, launch included. The exit code is 0 when every job completed, 1 otherwise.
+ */
 public class App {
-	
+
+	private static final String JOB_NAME = "job-report";
+
+	private static final String DEFAULT_FILE = "cvs/report.csv";
+
+	private static JobLauncherService launcher;
+
 	public static void main(String[] args) {
 
-		final Properties params = new Properties();
+		final long mainAt = System.currentTimeMillis();
+		final long jvmStartMillis = mainAt - ManagementFactory.getRuntimeMXBean().getStartTime();
+		long contextMillis = 0;
+		long runStartedAt = 0;
+		boolean completed = false;
+
+		BatchUtil.JobCommand command = BatchUtil.JobCommand.START;
+		final List<String> files = new ArrayList<String>();
+		for(String arg : args) {
+			if(BatchUtil.JobCommand.RESTART.getValue().equalsIgnoreCase(arg)) {
+				command = BatchUtil.JobCommand.RESTART;
+			} else if(!BatchUtil.JobCommand.START.getValue().equalsIgnoreCase(arg)) {
+				files.add(arg);
+			}
+		}
 
 		try {
 
-			JobExecution jobExecution = runJob(BatchUtil.JobCommand.START, "job-report", params);
-			System.out.println("Exit Status : " + jobExecution.getBatchStatus());
+			final long contextStartedAt = System.nanoTime();
+			getLauncher();
+			contextMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - contextStartedAt);
+			runStartedAt = System.nanoTime();
+
+			if(files.isEmpty()) {
+				final Properties params = new Properties();
+				params.setProperty("filePath", DEFAULT_FILE);
+				JobExecution jobExecution = runJob(command, JOB_NAME, params);
+				System.out.println("Exit Status : " + jobExecution.getBatchStatus());
+				completed = jobExecution.getBatchStatus() == BatchStatus.COMPLETED;
+			} else {
+				final List<CompletableFuture<JobExecution>> jobs = new ArrayList<CompletableFuture<JobExecution>>();
+				for(String file : files) {
+					final Properties params = new Properties();
+					params.setProperty("filePath", file);
+					jobs.add(getLauncher().submit(command, JOB_NAME, params));
+				}
+				System.out.println("Queued " + files.size() + " jobs");
+
+				completed = true;
+				for(int i = 0; i < jobs.size(); i++) {
+					final BatchStatus status = jobs.get(i).get().getBatchStatus();
+					System.out.println(files.get(i) + " Exit Status : " + status);
+					completed &= status == BatchStatus.COMPLETED;
+				}
+				System.out.println("Average wait : " + getLauncher().getAverageWaitMillis(JOB_NAME)
+						+ " ms, max wait : " + getLauncher().getMaxWaitMillis(JOB_NAME) + " ms");
+			}
 
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 
+		if(runStartedAt != 0) {
+			final long launchMillis = getLauncher().getAverageLaunchMillis(JOB_NAME);
+			final long runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStartedAt);
+			System.out.println("Startup : jvm " + jvmStartMillis + " ms, context " + contextMillis
+					+ " ms, job launch " + launchMillis + " ms (average), jobs " + runMillis + " ms");
+		}
 		System.out.println("Done");
 
+		// the partition threads of the operator are not daemon threads, the JVM
+		// would not end without an explicit exit
+		System.exit(completed ? 0 : 1);
 	}
-	
-	
+
+
 	/**
 	 * Utility method that runs the batch job
 	 */
 	protected static JobExecution runJob(final BatchUtil.JobCommand command, final String jobName, final Properties params)
 			throws Exception {
 
-		JsrJobOperator jobOperator = new JsrJobOperator();
-
-		long jobExecutionId = -1;
-		if(command == BatchUtil.JobCommand.START) {
-			jobExecutionId = jobOperator.start(jobName, params);
-		} 
-
-		JobExecution jobExecution = jobOperator.getJobExecution(jobExecutionId);
-		jobExecution = BatchUtil.waitForJobToEnd(jobOperator, jobExecutionId, 1000, 10);
+		return getLauncher().submit(command, jobName, params).get();
+	}
 
-		return jobExecution;
+	/**
+	 * Launcher shared by all the jobs, created with the first job
+	 */
+	protected static synchronized JobLauncherService getLauncher() {
+		if(launcher == null) {
+			final int threads = Integer.getInteger("launcher.threads", Runtime.getRuntime().availableProcessors());
+			launcher = new JobLauncherService(new JsrJobOperator(), threads, 1000, 600000);
+		}
+		return launcher;
 	}
-	
-	
+
 }
@@ -0,0 +1,44 @@
+package com.rave;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Checks for the batch schema, so that the schema scripts of baseContext.xml
+ * only run against a database that does not have it yet.
+ */
+public final class BatchSchema {
+
+	private BatchSchema() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Whether the table exists, whatever the case of its name in the database
+	 */
+	public static boolean exists(DataSource dataSource, String table) throws SQLException {
+		final Connection connection = dataSource.getConnection();
+		try {
+			final DatabaseMetaData metaData = connection.getMetaData();
+			for(String name : new String[] { table, table.toUpperCase(), table.toLowerCase() }) {
+				final ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, null);
+				try {
+					if(tables.next()) {
+						return true;
+					}
+				} finally {
+					JdbcUtils.closeResultSet(tables);
+				}
+			}
+			return false;
+		} finally {
+			JdbcUtils.closeConnection(connection);
+		}
+	}
+}
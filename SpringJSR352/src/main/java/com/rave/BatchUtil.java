@@ -1,61 +1,154 @@
-package com.rave;
-
-import java.util.EnumSet;
-import java.util.Set;
-
-import javax.batch.operations.JobOperator;
-import javax.batch.runtime.BatchStatus;
-import javax.batch.runtime.JobExecution;
-
-public class BatchUtil {
-
-    public static final Set<BatchStatus> INCOMPLETE_STATUSES = EnumSet.of(BatchStatus.STARTED, BatchStatus.STARTING);
-    
-    private BatchUtil() {
-        throw new UnsupportedOperationException();
-    }
-    
-    /**
-     * Waits for job to finish. JSR 352 does not provide a mechanism to 
-     * launch jobs in the synchronous mode. As a result, the polling needs
-     * to occur
-     * 
-     * @param jobOperator
-     * @param executionId
-     * @param pollingWait
-     * @param maxTries
-     * @return
-     */
-    public static JobExecution waitForJobToEnd(JobOperator jobOperator, 
-            final long executionId, final long pollingWait, final int maxTries) {
-    	
-    	int countTries = 0;
-        JobExecution jobExecution =  null;
-        do {
-            try {
-            	countTries++;
-                Thread.sleep(pollingWait);
-            } catch(InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-            jobExecution = jobOperator.getJobExecution(executionId);
-        } while(INCOMPLETE_STATUSES.contains(jobExecution.getBatchStatus()) || (countTries < maxTries));
-        
-        return jobExecution;
-    }
-    
-	public enum JobCommand {
-	    START("start"),
-	    RESTART("restart");
-	    
-	    private String value;
-	    
-	    private JobCommand(String value) {
-	        this.value = value;
-	    }
-	    
-	    public String getValue() {
-	        return this.value;
-	    }
-	}
-}
+package com.rave;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.batch.operations.JobOperator;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.JobExecution;
+
+public class BatchUtil {
+
+    public static final Set<BatchStatus> INCOMPLETE_STATUSES = 
+            EnumSet.of(BatchStatus.STARTED, BatchStatus.STARTING, BatchStatus.STOPPING);
+
+    /**
+     * Interval at which the status is re-read once the job listener signalled the end
+     * of the job, until the repository shows the final status
+     */
+    private static final long SETTLE_WAIT = 5;
+
+    /**
+     * End of job signals sent by the JobCompletionListener, by execution id. An entry
+     * exists while a caller of whenJobEnds waits for the job
+     */
+    private static final ConcurrentMap<Long, CompletableFuture<Void>> JOB_END_SIGNALS = 
+            new ConcurrentHashMap<Long, CompletableFuture<Void>>();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "job-completion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private BatchUtil() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Waits for job to finish. JSR 352 does not provide a mechanism to 
+     * launch jobs in the synchronous mode, see {@link #whenJobEnds}.
+     * 
+     * @param jobOperator
+     * @param executionId
+     * @param pollingWait
+     * @param maxTries
+     * @return the ended execution, or the running one if it did not end within 
+     *         <code>pollingWait * maxTries</code> milliseconds
+     */
+    public static JobExecution waitForJobToEnd(JobOperator jobOperator, 
+            final long executionId, final long pollingWait, final int maxTries) {
+
+        try {
+            return whenJobEnds(jobOperator, executionId, pollingWait, pollingWait * maxTries).get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof TimeoutException) {
+                return jobOperator.getJobExecution(executionId);
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns a future completed with the job execution as soon as the job reaches a
+     * terminal status. The job must have the JobCompletionListener registered to be
+     * signalled the moment it ends, otherwise the status is polled every 
+     * <code>pollingWait</code> milliseconds. The future fails with a TimeoutException 
+     * if the job has not ended after <code>timeout</code> milliseconds.
+     * 
+     * @param jobOperator
+     * @param executionId
+     * @param pollingWait
+     * @param timeout
+     * @return
+     */
+    public static CompletableFuture<JobExecution> whenJobEnds(final JobOperator jobOperator, 
+            final long executionId, final long pollingWait, final long timeout) {
+
+        final CompletableFuture<JobExecution> jobEnd = new CompletableFuture<JobExecution>();
+        final CompletableFuture<Void> signal = JOB_END_SIGNALS.computeIfAbsent(executionId, 
+                id -> new CompletableFuture<Void>());
+
+        final Runnable check = () -> {
+            try {
+                final JobExecution jobExecution = jobOperator.getJobExecution(executionId);
+                if(!INCOMPLETE_STATUSES.contains(jobExecution.getBatchStatus())) {
+                    jobEnd.complete(jobExecution);
+                }
+            } catch(RuntimeException e) {
+                jobEnd.completeExceptionally(e);
+            }
+        };
+
+        // the listener runs just before the final status is stored, so re-read it briefly
+        signal.thenRun(() -> {
+            final ScheduledFuture<?> settle = SCHEDULER.scheduleWithFixedDelay(check, 0, SETTLE_WAIT, 
+                    TimeUnit.MILLISECONDS);
+            jobEnd.whenComplete((jobExecution, e) -> settle.cancel(false));
+        });
+
+        // the job may have ended, and signalled nobody, before the signal was registered
+        final ScheduledFuture<?> poll = SCHEDULER.scheduleWithFixedDelay(check, 0, pollingWait, 
+                TimeUnit.MILLISECONDS);
+        final ScheduledFuture<?> expiry = SCHEDULER.schedule(() -> jobEnd.completeExceptionally(
+                new TimeoutException("Job execution " + executionId + " did not end within " + timeout + " ms")),
+                timeout, TimeUnit.MILLISECONDS);
+
+        jobEnd.whenComplete((jobExecution, e) -> {
+            poll.cancel(false);
+            expiry.cancel(false);
+            JOB_END_SIGNALS.remove(executionId, signal);
+        });
+        return jobEnd;
+    }
+
+    /**
+     * Signals that the job execution has ended, called by the JobCompletionListener. 
+     * The signal is removed once sent, nothing is kept when nobody waits for the job.
+     * 
+     * @param executionId
+     */
+    public static void signalJobEnded(final long executionId) {
+        JOB_END_SIGNALS.computeIfPresent(executionId, (id, signal) -> {
+            signal.complete(null);
+            return null;
+        });
+    }
+    
+	public enum JobCommand {
+	    START("start"),
+	    RESTART("restart");
+	    
+	    private String value;
+	    
+	    private JobCommand(String value) {
+	        this.value = value;
+	    }
+	    
+	    public String getValue() {
+	        return this.value;
+	    }
+	}
+}
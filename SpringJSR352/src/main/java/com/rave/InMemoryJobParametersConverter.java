@@ -0,0 +1,45 @@
+package com.rave;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.jsr.JsrJobParametersConverter;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+/**
+ * JSR 352 job parameters converter for the InMemoryJobRepositoryFactoryBean.
+ * The run id that makes every start a new job instance is taken from a counter
+ * instead of the BATCH_JOB_SEQ table, which does not exist without the schema.
+ */
+public class InMemoryJobParametersConverter extends JsrJobParametersConverter {
+
+	/**
+	 * @param dataSource required by the parent class, never used
+	 */
+	public InMemoryJobParametersConverter(DataSource dataSource) {
+		super(dataSource);
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		final AtomicLong runId = new AtomicLong();
+		incremeter = new DataFieldMaxValueIncrementer() {
+
+			@Override
+			public long nextLongValue() {
+				return runId.incrementAndGet();
+			}
+
+			@Override
+			public int nextIntValue() {
+				return (int) nextLongValue();
+			}
+
+			@Override
+			public String nextStringValue() {
+				return String.valueOf(nextLongValue());
+			}
+		};
+	}
+}
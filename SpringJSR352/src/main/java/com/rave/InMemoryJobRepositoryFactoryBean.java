@@ -0,0 +1,74 @@
+package com.rave;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.MapJobExplorerFactoryBean;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Job repository kept in memory, for jobs that do not need to be restarted
+ * after the JVM ends. No schema is needed and no metadata is sent to the
+ * database.
+ *
+ * The map based repository of Spring Batch does not support concurrent
+ * updates, as done by partitioned steps or jobs launched concurrently, so every
+ * call to the repository and to the explorer of the nested ExplorerFactoryBean
+ * is made under a single lock. The calls only touch maps, the lock is held for
+ * a few microseconds.
+ */
+public class InMemoryJobRepositoryFactoryBean extends MapJobRepositoryFactoryBean {
+
+	private final Object lock = new Object();
+
+	/**
+	 * @param transactionManager transaction manager of the steps, the metadata
+	 *        updated in a rolled back chunk is discarded with it
+	 */
+	public InMemoryJobRepositoryFactoryBean(PlatformTransactionManager transactionManager) {
+		super(transactionManager);
+	}
+
+	@Override
+	public JobRepository getObject() throws Exception {
+		return synchronize(super.getObject(), JobRepository.class, lock);
+	}
+
+	/**
+	 * Returns a proxy calling <code>target</code> under <code>lock</code>
+	 */
+	static <T> T synchronize(final T target, Class<T> type, final Object lock) {
+		final InvocationHandler handler = (proxy, method, args) -> {
+			synchronized(lock) {
+				try {
+					return method.invoke(target, args);
+				} catch (InvocationTargetException e) {
+					throw e.getTargetException();
+				}
+			}
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	/**
+	 * Explorer of an InMemoryJobRepositoryFactoryBean, sharing its lock
+	 */
+	public static class ExplorerFactoryBean extends MapJobExplorerFactoryBean {
+
+		private final InMemoryJobRepositoryFactoryBean repositoryFactory;
+
+		public ExplorerFactoryBean(InMemoryJobRepositoryFactoryBean repositoryFactory) {
+			super(repositoryFactory);
+			this.repositoryFactory = repositoryFactory;
+		}
+
+		@Override
+		public JobExplorer getObject() throws Exception {
+			return synchronize(super.getObject(), JobExplorer.class, repositoryFactory.lock);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package com.rave;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.batch.operations.JobExecutionNotRunningException;
+import javax.batch.operations.JobOperator;
+import javax.batch.operations.NoSuchJobException;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.JobExecution;
+import javax.batch.runtime.JobInstance;
+
+/**
+ * Runs many jobs concurrently through one shared JobOperator. Each job holds a
+ * thread of the pool from its start until it ends, so the pool size bounds the
+ * number of jobs running at once and the others wait in the queue. A job
+ * still running after the timeout is stopped, and keeps its thread until it
+ * has stopped.
+ */
+public class JobLauncherService {
+
+	private static final int INSTANCE_PAGE = 100;
+
+	private final JobOperator jobOperator;
+	private final ExecutorService executor;
+	private final long pollingWait;
+	private final long timeout;
+
+	private final ConcurrentMap<String, JobQueueStats> stats = new ConcurrentHashMap<String, JobQueueStats>();
+
+	/**
+	 * @param jobOperator operator shared by all the jobs
+	 * @param threads maximum number of jobs running at once
+	 * @param pollingWait fallback polling interval of the job status, in milliseconds
+	 * @param timeout time after which a running job is stopped, in milliseconds
+	 */
+	public JobLauncherService(JobOperator jobOperator, int threads, long pollingWait, long timeout) {
+		this.jobOperator = jobOperator;
+		this.pollingWait = pollingWait;
+		this.timeout = timeout;
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), r -> {
+					final Thread thread = new Thread(r, "job-launcher-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * Queues the job. START starts a new job instance, RESTART restarts the latest
+	 * failed or stopped execution of the job started with the same parameters.
+	 * 
+	 * @return a future completed with the ended execution
+	 */
+	public CompletableFuture<JobExecution> submit(final BatchUtil.JobCommand command, final String jobName,
+			final Properties params) {
+
+		final JobQueueStats jobStats = getStats(jobName);
+		final long queuedAt = System.nanoTime();
+		jobStats.queued.incrementAndGet();
+
+		return CompletableFuture.supplyAsync(() -> {
+			final long launchedAt = System.nanoTime();
+			jobStats.dequeued(launchedAt - queuedAt);
+			final long executionId = command == BatchUtil.JobCommand.RESTART
+					? jobOperator.restart(getLastFailedExecutionId(jobName, params), params)
+					: jobOperator.start(jobName, params);
+			jobStats.launchNanos.addAndGet(System.nanoTime() - launchedAt);
+			return waitForJobToEnd(executionId);
+		}, executor);
+	}
+
+	/**
+	 * Waits for the job to end, stopping it once the timeout is reached. The
+	 * thread is only released when the job has ended, so that no more than the
+	 * pool size of jobs run at once.
+	 */
+	private JobExecution waitForJobToEnd(long executionId) {
+		try {
+			return BatchUtil.whenJobEnds(jobOperator, executionId, pollingWait, timeout).join();
+		} catch(CompletionException e) {
+			if(!(e.getCause() instanceof TimeoutException)) {
+				throw e;
+			}
+		}
+		try {
+			jobOperator.stop(executionId);
+		} catch(JobExecutionNotRunningException e) {
+			// ended meanwhile
+		}
+		return BatchUtil.whenJobEnds(jobOperator, executionId, pollingWait, Long.MAX_VALUE).join();
+	}
+
+	/**
+	 * Number of jobs with this name waiting for a thread. Jobs leave the queue
+	 * concurrently, the value is a snapshot.
+	 */
+	public int getQueueDepth(String jobName) {
+		return getStats(jobName).queued.get();
+	}
+
+	/**
+	 * Average time jobs with this name waited for a thread, in milliseconds
+	 */
+	public long getAverageWaitMillis(String jobName) {
+		final JobQueueStats jobStats = getStats(jobName);
+		final long started = jobStats.started.get();
+		return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(jobStats.waitNanos.get() / started);
+	}
+
+	/**
+	 * Longest time a job with this name waited for a thread, in milliseconds
+	 */
+	public long getMaxWaitMillis(String jobName) {
+		return TimeUnit.NANOSECONDS.toMillis(getStats(jobName).maxWaitNanos.get());
+	}
+
+	/**
+	 * Average time taken to launch jobs with this name, in milliseconds. This is
+	 * mostly the loading of the job XML into its own application context.
+	 */
+	public long getAverageLaunchMillis(String jobName) {
+		final JobQueueStats jobStats = getStats(jobName);
+		final long started = jobStats.started.get();
+		return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(jobStats.launchNanos.get() / started);
+	}
+
+	/**
+	 * Stops accepting jobs, the queued ones still run
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Latest execution of the job that failed or stopped, is the last execution of
+	 * its instance, and was run with the given parameters
+	 */
+	private long getLastFailedExecutionId(String jobName, Properties params) {
+		final int instanceCount = jobOperator.getJobInstanceCount(jobName);
+		for(int start = 0; start < instanceCount; start += INSTANCE_PAGE) {
+			// latest instances first
+			for(JobInstance instance : jobOperator.getJobInstances(jobName, start, INSTANCE_PAGE)) {
+				JobExecution last = null;
+				for(JobExecution jobExecution : jobOperator.getJobExecutions(instance)) {
+					if(last == null || jobExecution.getExecutionId() > last.getExecutionId()) {
+						last = jobExecution;
+					}
+				}
+				if(last != null && (last.getBatchStatus() == BatchStatus.FAILED
+						|| last.getBatchStatus() == BatchStatus.STOPPED) && matches(last.getJobParameters(), params)) {
+					return last.getExecutionId();
+				}
+			}
+		}
+		throw new NoSuchJobException("No failed or stopped execution of job " + jobName + " with parameters "
+				+ params + " to restart");
+	}
+
+	private static boolean matches(Properties jobParameters, Properties params) {
+		for(String name : params.stringPropertyNames()) {
+			if(jobParameters == null || !params.getProperty(name).equals(jobParameters.getProperty(name))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private JobQueueStats getStats(String jobName) {
+		return stats.computeIfAbsent(jobName, name -> new JobQueueStats());
+	}
+
+	private static final class JobQueueStats {
+
+		final AtomicInteger queued = new AtomicInteger();
+		final AtomicLong started = new AtomicLong();
+		final AtomicLong waitNanos = new AtomicLong();
+		final AtomicLong maxWaitNanos = new AtomicLong();
+		final AtomicLong launchNanos = new AtomicLong();
+
+		void dequeued(long wait) {
+			queued.decrementAndGet();
+			started.incrementAndGet();
+			waitNanos.addAndGet(wait);
+			long max;
+			while(wait > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, wait)) {
+				// retry until the maximum is updated
+			}
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.rave;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+
+/**
+ * Makes every bean of the context lazy, so that only the beans the JSR 352
+ * operator and the jobs actually use are created. Database initializers stay
+ * eager, nothing references them.
+ */
+public class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+	@Override
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+		for(String name : beanFactory.getBeanDefinitionNames()) {
+			final BeanDefinition definition = beanFactory.getBeanDefinition(name);
+			if(!DataSourceInitializer.class.getName().equals(definition.getBeanClassName())) {
+				definition.setLazyInit(true);
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.rave.batch;
+
+import javax.batch.api.BatchProperty;
+import javax.batch.api.chunk.AbstractCheckpointAlgorithm;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+
+/**
+ * Checkpoint algorithm whose chunk size follows the measured duration of the
+ * write and commit of the chunks, see ChunkSizeController. The durations are reported by
+ * the AdaptiveChunkListener, which must be registered on the same step;
+ * without it the chunk size stays at <code>initialItemCount</code>. With
+ * <code>itemCount</code> the chunk size is fixed.
+ */
+public class AdaptiveCheckpointAlgorithm extends AbstractCheckpointAlgorithm {
+
+	public static final int DEFAULT_MIN_ITEM_COUNT = 1;
+	public static final int DEFAULT_MAX_ITEM_COUNT = 5000;
+	public static final int DEFAULT_INITIAL_ITEM_COUNT = 100;
+	public static final long DEFAULT_TARGET_COMMIT_MILLIS = 200;
+
+	@Inject
+	private StepContext stepContext;
+
+	/**
+	 * Smallest chunk size. If not provided, default is 1
+	 */
+	@Inject
+	@BatchProperty
+	private String minItemCount;
+
+	/**
+	 * Largest chunk size. If not provided, default is 5000
+	 */
+	@Inject
+	@BatchProperty
+	private String maxItemCount;
+
+	/**
+	 * Size of the first chunk. If not provided, default is 100
+	 */
+	@Inject
+	@BatchProperty
+	private String initialItemCount;
+
+	/**
+	 * Target duration of the write and commit of a chunk in milliseconds. If not
+	 * provided, default is 200 unless <code>targetItemCount</code> is set
+	 */
+	@Inject
+	@BatchProperty
+	private String targetCommitMillis;
+
+	/**
+	 * Target number of items per commit, used instead of a target duration
+	 */
+	@Inject
+	@BatchProperty
+	private String targetItemCount;
+
+	/**
+	 * Fixed chunk size, used instead of the other properties
+	 */
+	@Inject
+	@BatchProperty
+	private String itemCount;
+
+	private ChunkSizeController controller;
+
+	@Override
+	public void beginCheckpoint() throws Exception {
+		if(controller == null) {
+			controller = ChunkSizeController.get(stepContext);
+			if(controller == null) {
+				controller = createController();
+				controller.register(stepContext);
+			}
+		}
+		controller.beginChunk();
+	}
+
+	@Override
+	public boolean isReadyToCheckpoint() throws Exception {
+		return controller.itemRead();
+	}
+
+	private ChunkSizeController createController() {
+		if(!isEmpty(itemCount)) {
+			final int fixed = Integer.parseInt(itemCount.trim());
+			return new ChunkSizeController(fixed, fixed, fixed, 0, fixed);
+		}
+
+		final int itemCountTarget = isEmpty(targetItemCount) ? 0 : Integer.parseInt(targetItemCount.trim());
+		final long commitTarget = !isEmpty(targetCommitMillis) ? Long.parseLong(targetCommitMillis.trim())
+				: itemCountTarget > 0 ? 0 : DEFAULT_TARGET_COMMIT_MILLIS;
+
+		return new ChunkSizeController(
+				isEmpty(minItemCount) ? DEFAULT_MIN_ITEM_COUNT : Integer.parseInt(minItemCount.trim()),
+				isEmpty(maxItemCount) ? DEFAULT_MAX_ITEM_COUNT : Integer.parseInt(maxItemCount.trim()),
+				isEmpty(initialItemCount) ? DEFAULT_INITIAL_ITEM_COUNT : Integer.parseInt(initialItemCount.trim()),
+				commitTarget, itemCountTarget);
+	}
+
+	private static boolean isEmpty(String value) {
+		return value == null || value.trim().length() == 0;
+	}
+}
@@ -0,0 +1,73 @@
+package com.rave.batch;
+
+import java.util.List;
+
+import javax.batch.api.chunk.listener.AbstractChunkListener;
+import javax.batch.api.chunk.listener.ItemWriteListener;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Times the write and commit of each chunk, from the call to the writer to the
+ * end of the chunk, and reports it to the ChunkSizeController of the
+ * AdaptiveCheckpointAlgorithm. Reading and processing are not timed: they take
+ * the same time per item whatever the chunk size. Chunks that are rolled back,
+ * e.g. because the writer failed, make the controller back off. Chunk size
+ * changes are logged at debug level.
+ */
+public class AdaptiveChunkListener extends AbstractChunkListener implements ItemWriteListener {
+
+	private static final Log LOG = LogFactory.getLog(AdaptiveChunkListener.class);
+
+	@Inject
+	private StepContext stepContext;
+
+	/**
+	 * Start of the write of the current chunk, 0 until the writer is called
+	 */
+	private long writeStart;
+
+	@Override
+	public void beforeChunk() throws Exception {
+		writeStart = 0;
+	}
+
+	@Override
+	public void beforeWrite(List<Object> items) throws Exception {
+		writeStart = System.nanoTime();
+	}
+
+	@Override
+	public void afterWrite(List<Object> items) throws Exception {
+	}
+
+	@Override
+	public void onWriteError(List<Object> items, Exception ex) throws Exception {
+	}
+
+	@Override
+	public void onError(Exception ex) throws Exception {
+		final ChunkSizeController controller = ChunkSizeController.get(stepContext);
+		if(controller != null) {
+			controller.chunkFailed();
+			System.out.println("Chunk failed, chunk size reduced to " + controller.getItemCount());
+		}
+	}
+
+	@Override
+	public void afterChunk() throws Exception {
+		final ChunkSizeController controller = ChunkSizeController.get(stepContext);
+		// nothing to time when every item of the chunk was filtered or skipped
+		if(controller == null || writeStart == 0) {
+			return;
+		}
+		final int previous = controller.getItemCount();
+		controller.chunkCommitted(System.nanoTime() - writeStart);
+		if(controller.getItemCount() != previous && LOG.isDebugEnabled()) {
+			LOG.debug("Chunk size changed from " + previous + " to " + controller.getItemCount());
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.rave.batch;
+
+/**
+ * Job or step lifecycle event, written to the BATCH_AUDIT table by the AuditSink
+ */
+public class AuditEvent {
+
+	public static final String JOB_START = "JOB_START";
+	public static final String JOB_END = "JOB_END";
+	public static final String STEP_START = "STEP_START";
+	public static final String STEP_END = "STEP_END";
+
+	private final long time = System.currentTimeMillis();
+	private final String event;
+	private final String jobName;
+	private final long jobExecutionId;
+	private final String stepName;
+	private final String status;
+	private final String detail;
+
+	/**
+	 * @param stepName null for job events
+	 * @param detail free text, truncated to 255 characters
+	 */
+	public AuditEvent(String event, String jobName, long jobExecutionId, String stepName, String status,
+			String detail) {
+		this.event = event;
+		this.jobName = jobName;
+		this.jobExecutionId = jobExecutionId;
+		this.stepName = stepName;
+		this.status = status;
+		this.detail = detail != null && detail.length() > 255 ? detail.substring(0, 255) : detail;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public String getEvent() {
+		return event;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	public long getJobExecutionId() {
+		return jobExecutionId;
+	}
+
+	public String getStepName() {
+		return stepName;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public String getDetail() {
+		return detail;
+	}
+
+	@Override
+	public String toString() {
+		return "AuditEvent [" + event + " " + jobName + "/" + jobExecutionId + (stepName == null ? "" : "/" + stepName)
+				+ " " + status + (detail == null ? "" : " " + detail) + "]";
+	}
+}
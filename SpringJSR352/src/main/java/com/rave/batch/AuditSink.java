@@ -0,0 +1,179 @@
+package com.rave.batch;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes AuditEvents to the BATCH_AUDIT table on a background thread, so that
+ * jobs never wait for audit I/O. Events are queued in a bounded queue of
+ * <code>-Daudit.queueSize</code> events (default 10000) and dropped, with a
+ * count kept, when it is full. The writer inserts up to
+ * <code>-Daudit.batchSize</code> events (default 100) per transaction.
+ *
+ * A single sink is shared by all the jobs of the JVM. Events still queued at
+ * shutdown are written for up to 5 seconds.
+ */
+public final class AuditSink {
+
+	private static final String INSERT_SQL = "insert into BATCH_AUDIT(EVENT_TIME,EVENT,JOB_NAME,JOB_EXECUTION_ID,"
+			+ "STEP_NAME,STATUS,DETAIL) values (?, ?, ?, ?, ?, ?, ?)";
+
+	private static final long SHUTDOWN_WAIT = 5000;
+
+	private static final ParameterizedPreparedStatementSetter<AuditEvent> EVENT_SETTER =
+			new ParameterizedPreparedStatementSetter<AuditEvent>() {
+
+		@Override
+		public void setValues(PreparedStatement ps, AuditEvent event) throws SQLException {
+			ps.setLong(1, event.getTime());
+			ps.setString(2, event.getEvent());
+			ps.setString(3, event.getJobName());
+			ps.setLong(4, event.getJobExecutionId());
+			if(event.getStepName() == null) {
+				ps.setNull(5, Types.VARCHAR);
+			} else {
+				ps.setString(5, event.getStepName());
+			}
+			ps.setString(6, event.getStatus());
+			ps.setString(7, event.getDetail());
+		}
+	};
+
+	private static AuditSink instance;
+
+	private final BlockingQueue<AuditEvent> queue;
+	private final int batchSize;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final Thread writer;
+
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	private volatile boolean stopping = false;
+
+	AuditSink(DataSource dataSource, PlatformTransactionManager transactionManager, int queueSize, int batchSize) {
+		if(queueSize < 1 || batchSize < 1) {
+			throw new IllegalArgumentException("queueSize and batchSize must be positive");
+		}
+		this.queue = new ArrayBlockingQueue<AuditEvent>(queueSize);
+		this.batchSize = batchSize;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.writer = new Thread(this::run, "audit-sink");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Sink shared by the jobs, created on first use with the given data source
+	 */
+	public static synchronized AuditSink getInstance(DataSource dataSource,
+			PlatformTransactionManager transactionManager) {
+		if(instance == null) {
+			final AuditSink sink = new AuditSink(dataSource, transactionManager,
+					Integer.getInteger("audit.queueSize", 10000), Integer.getInteger("audit.batchSize", 100));
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> sink.stop(SHUTDOWN_WAIT), "audit-sink-shutdown"));
+			instance = sink;
+		}
+		return instance;
+	}
+
+	/**
+	 * Queues the event without blocking
+	 *
+	 * @return false if the queue was full and the event was dropped
+	 */
+	public boolean publish(AuditEvent event) {
+		if(!stopping && queue.offer(event)) {
+			return true;
+		}
+		dropped.incrementAndGet();
+		return false;
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getWritten() {
+		return written.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Number of events lost because their batch could not be written
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Stops accepting events and waits up to <code>timeout</code> ms for the
+	 * queued ones to be written
+	 */
+	void stop(long timeout) {
+		stopping = true;
+		writer.interrupt();
+		try {
+			writer.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		final List<AuditEvent> batch = new ArrayList<AuditEvent>(batchSize);
+		while(!stopping || !queue.isEmpty()) {
+			try {
+				final AuditEvent first = stopping ? queue.poll() : queue.poll(1, TimeUnit.SECONDS);
+				if(first == null) {
+					continue;
+				}
+				batch.add(first);
+			} catch (InterruptedException e) {
+				// woken up by stop, write what is left
+				continue;
+			}
+			queue.drainTo(batch, batchSize - 1);
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	private void write(final List<AuditEvent> batch) {
+		try {
+			transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+				@Override
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), EVENT_SETTER);
+				}
+			});
+			written.addAndGet(batch.size());
+		} catch (RuntimeException e) {
+			failed.addAndGet(batch.size());
+			System.out.println("Audit events not written (" + batch.size() + ") : " + e);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.rave.batch;
+
+import java.io.Serializable;
+
+/**
+ * Checkpoint of the BeanIOItemReader. Holds the byte offset at which the last
+ * committed record starts, so that a restart can seek straight to it, and the
+ * number of items read so far which is used to validate the position. The
+ * path of the file and the byte range of the partition are kept to check that
+ * a restarted partition reads the same part of the same file.
+ */
+public class BeanIOCheckpoint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long offset;
+	private final long itemCount;
+	private final String filePath;
+	private final Long startOffset;
+	private final Long endOffset;
+
+	public BeanIOCheckpoint(long offset, long itemCount) {
+		this(offset, itemCount, null);
+	}
+
+	public BeanIOCheckpoint(long offset, long itemCount, String filePath) {
+		this(offset, itemCount, filePath, null, null);
+	}
+
+	public BeanIOCheckpoint(long offset, long itemCount, String filePath, Long startOffset, Long endOffset) {
+		this.offset = offset;
+		this.itemCount = itemCount;
+		this.filePath = filePath;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+	}
+
+	/**
+	 * Byte offset of the first line of the last committed record
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Number of items read up to and including the last committed record
+	 */
+	public long getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * Path of the file read, null in checkpoints taken before it was recorded
+	 */
+	public String getFilePath() {
+		return filePath;
+	}
+
+	/**
+	 * Byte offset at which the range of the partition starts, null in
+	 * checkpoints taken before it was recorded
+	 */
+	public Long getStartOffset() {
+		return startOffset;
+	}
+
+	/**
+	 * Byte offset past the range of the partition, Long.MAX_VALUE when read to
+	 * the end of the file, null in checkpoints taken before it was recorded
+	 */
+	public Long getEndOffset() {
+		return endOffset;
+	}
+
+	/**
+	 * Whether the checkpoint was taken on the given range, or on an unknown one
+	 */
+	boolean isInRange(long start, long end) {
+		return startOffset == null || endOffset == null
+				|| startOffset.longValue() == start && endOffset.longValue() == end;
+	}
+
+	@Override
+	public String toString() {
+		return "BeanIOCheckpoint [offset=" + offset + ", itemCount=" + itemCount + ", filePath=" + filePath
+				+ ", range=" + startOffset + "-" + endOffset + "]";
+	}
+}
@@ -3,12 +3,13 @@ package com.rave.batch;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
 
 import javax.batch.api.BatchProperty;
 import javax.batch.api.chunk.ItemReader;
@@ -28,10 +29,21 @@ public final class BeanIOItemReader implements ItemReader {
 	 * Default Encoding for the file
 	 */
 	public static final String DEFAULT_ENCODING = "UTF-8";
+
+	/**
+	 * Input mode reading the file through a buffered stream
+	 */
+	public static final String INPUT_MODE_STREAM = "stream";
+
+	/**
+	 * Input mode reading the file through memory mapped windows of a FileChannel
+	 */
+	public static final String INPUT_MODE_MAPPED = "mapped";
 	
 
     /**
-     * The name of the file to read from
+     * The name of the file to read from, set by the SamplePartitioner when the
+     * job reads a directory or a glob pattern
      */
     @Inject
     @BatchProperty
@@ -57,10 +69,44 @@ public final class BeanIOItemReader implements ItemReader {
 	@Inject
 	@BatchProperty
 	private String encoding;
+
+	/**
+	 * Byte offset of the first record to read, set by the SamplePartitioner when the
+	 * file is read in ranges. If not provided, reading starts at the beginning of the file
+	 */
+	@Inject
+	@BatchProperty
+	private String startOffset;
+
+	/**
+	 * Byte offset past the last record to read. Records starting at or after this
+	 * offset belong to the next range. If not provided, the file is read to the end
+	 */
+	@Inject
+	@BatchProperty
+	private String endOffset;
+
+	/**
+	 * How the file is read, either "stream" or "mapped". If not provided, default is stream.
+	 * The mapped mode requires an ASCII compatible encoding
+	 */
+	@Inject
+	@BatchProperty
+	private String inputMode;
+
+	/**
+	 * Size in bytes of the read buffer, or of the mapped windows in mapped mode.
+	 * Compressed files are read with 64KB buffers by default
+	 */
+	@Inject
+	@BatchProperty
+	private String bufferSize;
 	
 
     private BeanReader reader;
+	private LineOffsetReader lineReader;
 	private long items = 0;
+	private long lastRecordOffset = 0;
     
 	public BeanIOItemReader() { 
 		super();
@@ -84,7 +130,7 @@ public BeanIOItemReader(String filePath, String streamName, String mappingFile,
 	@Override
 	public void open(Serializable checkpoint) throws Exception {
 		
-		if(filePath == null) {
+		if(filePath == null || filePath.trim().length() == 0) {
 			throw new IllegalArgumentException("File path cannot be empty");
 		}
 		if(streamName == null) {
@@ -93,44 +139,87 @@ public BeanIOItemReader(String filePath, String streamName, String mappingFile,
 		if(encoding == null) {
 			encoding = DEFAULT_ENCODING;
 		}
+		if(inputMode == null || inputMode.trim().length() == 0) {
+			inputMode = INPUT_MODE_STREAM;
+		}
+		if(!INPUT_MODE_STREAM.equals(inputMode) && !INPUT_MODE_MAPPED.equals(inputMode)) {
+			throw new IllegalArgumentException("Unknown input mode " + inputMode);
+		}
 		
 		
-		// BufferedReader to be processed, as defined by the filePath and encoding
-		BufferedReader readerForFileProcessing = this.openFileForProcessing();
-		
+		final File fileForProcessing = getFileForProcessing(this.filePath);
+		final boolean compressed = CompressedInput.isCompressed(fileForProcessing);
+		if(compressed && INPUT_MODE_MAPPED.equals(inputMode)) {
+			throw new IllegalArgumentException("Compressed file " + fileForProcessing
+					+ " cannot be read in mapped mode");
+		}
+		final Charset charset = Charset.forName(this.encoding);
+		final long rangeStart = parseOffset(this.startOffset, 0);
+		final long rangeEnd = parseOffset(this.endOffset, Long.MAX_VALUE);
+		if((rangeStart > 0 || INPUT_MODE_MAPPED.equals(inputMode)) && !LineOffsetReader.isSupported(charset)) {
+			throw new IllegalArgumentException("Reading from an offset or in mapped mode is not supported for encoding "
+					+ this.encoding);
+		}
+
 		// BeanIO mappingFile file
 		String mappingFilePath = this.getMappingFilePath();
 
-		final StreamFactory streamFactory = StreamFactory.newInstance();
-		streamFactory.load(mappingFilePath);
-		reader = streamFactory.createReader(this.streamName, readerForFileProcessing);
-		
+		final StreamFactory streamFactory = StreamFactoryCache.get(mappingFilePath);
+
 		// In case of restarting, reset position to last read point
-		if(checkpoint != null) {
-			if(!Number.class.isInstance(checkpoint)) {				
-				throw new BatchRuntimeException("Unexpected checkpoint exception. " +
-						"The BeanIOItemReader checkpoint must be a number, reflecting the last item processed" +
-						"when checkpoint was taken.");
+		if(checkpoint instanceof BeanIOCheckpoint && LineOffsetReader.isSupported(charset)) {
+			final BeanIOCheckpoint beanIOCheckpoint = (BeanIOCheckpoint) checkpoint;
+			if(beanIOCheckpoint.getFilePath() != null && !beanIOCheckpoint.getFilePath().equals(this.filePath)) {
+				throw new IllegalStateException("Checkpoint " + beanIOCheckpoint + " was taken on another file than "
+						+ this.filePath + ", the files to read have changed since the checkpoint was taken");
 			}
-			items = Number.class.cast(checkpoint).longValue();
-			int skipped = reader.skip((int)items);
-			
-			if(skipped < items) {
-				throw new IllegalStateException("Failed to skip "+ items +" item, end of stream reached after " +
-						skipped + " items");
+			// the ranges follow the number of partitions, which must not change between restarts
+			if(!beanIOCheckpoint.isInRange(rangeStart, rangeEnd)) {
+				throw new IllegalStateException("Checkpoint " + beanIOCheckpoint + " was taken on another range than "
+						+ rangeStart + "-" + rangeEnd + " of " + this.filePath
+						+ ", restart with the -Dbatch.partitions of the failed execution");
+			}
+			// offsets of compressed files are checked while decompressing up to them
+			if(!compressed && beanIOCheckpoint.getOffset() > fileForProcessing.length()) {
+				throw new IllegalStateException("Checkpoint " + beanIOCheckpoint + " is past the end of "
+						+ fileForProcessing + ", the file has changed since the checkpoint was taken");
+			}
+			reader = streamFactory.createReader(this.streamName,
+					this.openFileForProcessing(fileForProcessing, charset, beanIOCheckpoint.getOffset()));
+
+			// the checkpoint points at the start of the last committed record
+			items = beanIOCheckpoint.getItemCount();
+			if(items > 0 && reader.skip(1) != 1) {
+				throw new IllegalStateException("Failed to skip item " + items + " at offset "
+						+ beanIOCheckpoint.getOffset() + ", end of stream reached");
+			}
+			lastRecordOffset = beanIOCheckpoint.getOffset();
+		} else {
+			reader = streamFactory.createReader(this.streamName,
+					this.openFileForProcessing(fileForProcessing, charset, rangeStart));
+			lastRecordOffset = rangeStart;
+
+			if(checkpoint != null) {
+				if(!Number.class.isInstance(checkpoint)) {
+					throw new BatchRuntimeException("Unexpected checkpoint exception. " +
+							"The BeanIOItemReader checkpoint must be a BeanIOCheckpoint or a number, reflecting " +
+							"the last item processed when checkpoint was taken.");
+				}
+				items = Number.class.cast(checkpoint).longValue();
+				this.skipItems(items);
 			}
 		}
-		
-		
 	}
 
-
 	@Override
 	public Object readItem() throws InvalidRecordException, UnidentifiedRecordException {
 		
 		final Object item = reader.read();
 		if(item != null) {
 			incrementReaderCount();
+			if(lineReader != null) {
+				lastRecordOffset = lineReader.getLineOffset(reader.getLineNumber());
+			}
 		}
 		
 		return item;
@@ -141,7 +230,11 @@ public BeanIOItemReader(String filePath, String streamName, String mappingFile,
 	 */
 	@Override
 	public Serializable checkpointInfo() throws Exception {
-		return this.items;
+		if(lineReader == null) {
+			return this.items;
+		}
+		return new BeanIOCheckpoint(this.lastRecordOffset, this.items, this.filePath,
+				parseOffset(this.startOffset, 0), parseOffset(this.endOffset, Long.MAX_VALUE));
 	}
 
 	@Override
@@ -155,6 +248,7 @@ public BeanIOItemReader(String filePath, String streamName, String mappingFile,
 				throw new BatchRuntimeException("Unable to close the the BatchIOItemReader", e);
 			} finally {
 				reader = null;
+				lineReader = null;
 			}
 		}
 	}
@@ -165,11 +259,27 @@ public BeanIOItemReader(String filePath, String streamName, String mappingFile,
 	private void incrementReaderCount() {
 		items += 1;
 	}
+
+	/**
+	 * Skips the given number of items by parsing them, used for numeric checkpoints
+	 */
+	private void skipItems(long count) {
+		long skipped = 0;
+		while(skipped < count) {
+			final int batch = (int) Math.min(Integer.MAX_VALUE, count - skipped);
+			final int skippedInBatch = reader.skip(batch);
+			skipped += skippedInBatch;
+			if(skippedInBatch < batch) {
+				throw new IllegalStateException("Failed to skip "+ count +" item, end of stream reached after " +
+						skipped + " items");
+			}
+		}
+	}
 	
 
 	private String getMappingFilePath() throws URISyntaxException {
 		
-		String mappingFilePath = null;
+		String mappingFilePath = this.mappingFile;
 		if(!new File(this.mappingFile).exists()) {
 			final URL mappingFileUrl = this.getClass().getClassLoader().getResource(this.mappingFile);
 			if(mappingFileUrl != null && mappingFileUrl.getPath() != null) {
@@ -181,19 +291,71 @@ public BeanIOItemReader(String filePath, String streamName, String mappingFile,
 		return mappingFilePath;
 	}
 
-	private BufferedReader openFileForProcessing() throws URISyntaxException, 
-			UnsupportedEncodingException, FileNotFoundException {
+	/**
+	 * Resolves the file to process, either from the file system or from the classpath
+	 */
+	static File getFileForProcessing(String filePath) throws URISyntaxException {
 		
-		File fileForProfessing = new File(this.filePath);
+		File fileForProfessing = new File(filePath);
 		if(!fileForProfessing.exists()) {
-			final URL fileForProfessingUrl = this.getClass().getClassLoader().getResource(this.filePath);
+			final URL fileForProfessingUrl = BeanIOItemReader.class.getClassLoader().getResource(filePath);
 			if(fileForProfessingUrl != null && fileForProfessingUrl.getPath() != null) {
 				fileForProfessing = new File(fileForProfessingUrl.toURI().getPath());
 			} else {
-				throw new BatchRuntimeException("File for processing does not exist!");
+				throw new BatchRuntimeException("File for processing does not exist! [" + filePath + "]");
 			}
 		}
+		return fileForProfessing;
+	}
+
+	/**
+	 * Opens the file positioned at the given byte offset. Files in an ASCII compatible
+	 * encoding are read through a LineOffsetReader so that byte offset checkpoints can
+	 * be taken, any other encoding falls back to a plain reader and item count checkpoints.
+	 * Compressed files are decompressed while read, the offset being one of the
+	 * decompressed bytes.
+	 */
+	private Reader openFileForProcessing(File fileForProcessing, Charset charset, long offset) 
+			throws IOException {
+
+		final long rangeEnd = parseOffset(this.endOffset, Long.MAX_VALUE);
+		if(CompressedInput.isCompressed(fileForProcessing)) {
+			final int readBufferSize = (int) parseOffset(this.bufferSize, CompressedInput.DEFAULT_BUFFER_SIZE);
+			if(!LineOffsetReader.isSupported(charset)) {
+				lineReader = null;
+				return new BufferedReader(new InputStreamReader(
+						CompressedInput.open(fileForProcessing, 0, readBufferSize), charset), readBufferSize);
+			}
+			lineReader = new LineOffsetReader(CompressedInput.open(fileForProcessing, offset, readBufferSize), charset,
+					offset, rangeEnd, readBufferSize);
+			return lineReader;
+		}
+
+		final FileInputStream in = new FileInputStream(fileForProcessing);
 
-		return new BufferedReader(new InputStreamReader(new FileInputStream(fileForProfessing), this.encoding));
+		if(INPUT_MODE_MAPPED.equals(inputMode)) {
+			final int windowSize = (int) parseOffset(this.bufferSize, LineOffsetReader.DEFAULT_MAPPED_WINDOW_SIZE);
+			lineReader = LineOffsetReader.mapped(in.getChannel(), charset, offset, rangeEnd, windowSize);
+			return lineReader;
+		}
+
+		final int readBufferSize = (int) parseOffset(this.bufferSize, LineOffsetReader.DEFAULT_BUFFER_SIZE);
+		if(!LineOffsetReader.isSupported(charset)) {
+			lineReader = null;
+			return new BufferedReader(new InputStreamReader(in, charset), readBufferSize);
+		}
+
+		if(offset > 0) {
+			in.getChannel().position(offset);
+		}
+		lineReader = new LineOffsetReader(in, charset, offset, rangeEnd, readBufferSize);
+		return lineReader;
+	}
+
+	private static long parseOffset(String offset, long defaultOffset) {
+		if(offset == null || offset.trim().length() == 0) {
+			return defaultOffset;
+		}
+		return Long.parseLong(offset.trim());
 	}
 }
@@ -0,0 +1,28 @@
+package com.rave.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Loads a CSV stream into a table in one operation. Used by the BulkLoadWriter
+ * so that the database specific bulk API can be swapped.
+ *
+ * The stream is UTF-8, fields are separated by commas and enclosed in double
+ * quotes, quotes and backslashes inside a field are escaped with a backslash
+ * as are line breaks (<code>\n</code>, <code>\r</code>), NULL is written as
+ * <code>\N</code> and rows end with a line feed.
+ */
+public interface BulkLoadStrategy {
+
+	/**
+	 * @param connection connection of the current chunk transaction
+	 * @param table table to load into
+	 * @param columns columns in the order of the CSV fields
+	 * @param csv rows to load
+	 * @return the number of rows loaded
+	 */
+	int load(Connection connection, String table, String[] columns, InputStream csv) 
+			throws SQLException, IOException;
+}
@@ -0,0 +1,248 @@
+package com.rave.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.batch.api.BatchProperty;
+import javax.batch.api.chunk.AbstractItemWriter;
+import javax.batch.operations.BatchRuntimeException;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.rave.model.Report;
+import com.rave.model.TypedReport;
+
+/**
+ * Alternative to the DatabaseWriter that encodes each chunk as CSV in memory
+ * and hands it to a BulkLoadStrategy, LOAD DATA LOCAL INFILE by default. Report
+ * items go to RAW_REPORT, TypedReport items to TYPED_REPORT. The items are
+ * first validated in parallel like with the DatabaseWriter, which takes the
+ * same <code>processor</code>, <code>threads</code> and <code>skipLimit</code>
+ * properties. The load runs on the connection of the chunk transaction, so a failed chunk is
+ * rolled back and retried from its checkpoint like with the DatabaseWriter.
+ */
+public class BulkLoadWriter extends AbstractItemWriter {
+
+	private static final Log LOG = LogFactory.getLog(BulkLoadWriter.class);
+
+	public static final String TABLE = "RAW_REPORT";
+
+	public static final String[] COLUMNS = {"DATE", "IMPRESSIONS", "CLICKS", "EARNINGS"};
+
+	public static final String TYPED_TABLE = "TYPED_REPORT";
+
+	public static final String[] TYPED_COLUMNS = {"REPORT_DAY", "IMPRESSIONS", "CLICKS", "EARNINGS_CENTS"};
+
+	static final String CSV_ENCODING = "UTF-8";
+
+	@Autowired
+	DataSource dataSource;
+
+	/**
+	 * Class name of the BulkLoadStrategy. If not provided, default is MySqlLoadDataStrategy
+	 */
+	@Inject
+	@BatchProperty
+	private String bulkLoadStrategy;
+
+	@Inject
+	private JobContext jobContext;
+
+	@Inject
+	private StepContext stepContext;
+
+	/**
+	 * Class name of the ItemProcessor run over the items before they are
+	 * loaded. If not provided, default is ReportProcessor
+	 */
+	@Inject
+	@BatchProperty
+	private String processor;
+
+	/**
+	 * Number of threads processing each chunk, the chunk thread included. If not
+	 * provided, the number of processors
+	 */
+	@Inject
+	@BatchProperty
+	private String threads;
+
+	/**
+	 * Most items skipped by the step, the ones failing the processor included.
+	 * If not provided, there is no limit
+	 */
+	@Inject
+	@BatchProperty
+	private String skipLimit;
+
+	private JdbcTemplate jdbcTemplate;
+	private BulkLoadStrategy strategy;
+	private ParallelChunkProcessor chunkProcessor;
+	private final CsvBuffer csv = new CsvBuffer();
+
+	private long rowsWritten = 0;
+	private long writeNanos = 0;
+
+	@Override
+	public void open(Serializable checkpoint) throws Exception {
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		if(bulkLoadStrategy == null || bulkLoadStrategy.trim().length() == 0) {
+			strategy = new MySqlLoadDataStrategy();
+		} else {
+			strategy = (BulkLoadStrategy) Class.forName(bulkLoadStrategy.trim()).getDeclaredConstructor().newInstance();
+		}
+		chunkProcessor = DatabaseWriter.newChunkProcessor(processor, threads, skipLimit,
+				jobContext == null ? null : MetricsRegistry.get(jobContext, stepContext));
+	}
+
+	@Override
+	public void writeItems(List<Object> chunk) throws Exception {
+
+		final List<Object> items = chunkProcessor.process(chunk);
+		if(items.isEmpty()) {
+			chunkProcessor.countSkipped();
+			return;
+		}
+
+		final long start = System.nanoTime();
+		csv.reset();
+		final Writer out = new OutputStreamWriter(csv, CSV_ENCODING);
+		final boolean typed = !items.isEmpty() && items.get(0) instanceof TypedReport;
+		for(Object item : items) {
+			if(typed) {
+				writeRow(out, (TypedReport) item);
+			} else {
+				writeRow(out, (Report) item);
+			}
+		}
+		out.flush();
+		final String table = typed ? TYPED_TABLE : TABLE;
+		final String[] columns = typed ? TYPED_COLUMNS : COLUMNS;
+
+		final int loaded = jdbcTemplate.execute(new ConnectionCallback<Integer>() {
+
+			@Override
+			public Integer doInConnection(Connection connection) throws SQLException {
+				try {
+					return strategy.load(connection, table, columns, csv.toInputStream());
+				} catch(IOException e) {
+					throw new BatchRuntimeException("Unable to stream the chunk to the database", e);
+				}
+			}
+		});
+		if(loaded != items.size()) {
+			throw new IllegalStateException("Loaded " + loaded + " rows for a chunk of " + items.size() + " items");
+		}
+
+		chunkProcessor.countSkipped();
+
+		final long elapsed = System.nanoTime() - start;
+		rowsWritten += loaded;
+		writeNanos += elapsed;
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("Number of Records Loaded = " + loaded + " (" + rowsPerSecond(loaded, elapsed) + " rows/s)");
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		if(chunkProcessor != null) {
+			chunkProcessor.shutdown();
+		}
+		System.out.println("Total Records Loaded = " + rowsWritten + " (" + rowsPerSecond(rowsWritten, writeNanos)
+				+ " rows/s)");
+	}
+
+	/**
+	 * Comma separated list of the columns
+	 */
+	static String columnList(String[] columns) {
+		final StringBuilder list = new StringBuilder();
+		for(String column : columns) {
+			if(list.length() > 0) {
+				list.append(',');
+			}
+			list.append(column);
+		}
+		return list.toString();
+	}
+
+	private static void writeRow(Writer out, Report report) throws IOException {
+		writeField(out, report.getDate());
+		out.write(',');
+		writeField(out, report.getImpressions());
+		out.write(',');
+		writeField(out, report.getClicks());
+		out.write(',');
+		writeField(out, report.getEarning());
+		out.write('\n');
+	}
+
+	private static void writeRow(Writer out, TypedReport report) throws IOException {
+		out.write(Integer.toString(report.getDay()));
+		out.write(',');
+		out.write(Long.toString(report.getImpressions()));
+		out.write(',');
+		out.write(Long.toString(report.getClicks()));
+		out.write(',');
+		out.write(Long.toString(report.getEarningCents()));
+		out.write('\n');
+	}
+
+	private static void writeField(Writer out, String value) throws IOException {
+		if(value == null) {
+			out.write("\\N");
+			return;
+		}
+		out.write('"');
+		for(int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if(c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			} else if(c == '\n') {
+				out.write("\\n");
+			} else if(c == '\r') {
+				out.write("\\r");
+			} else {
+				out.write(c);
+			}
+		}
+		out.write('"');
+	}
+
+	private static long rowsPerSecond(long rows, long nanos) {
+		return nanos == 0 ? 0 : rows * 1000000000L / nanos;
+	}
+
+	/**
+	 * Byte buffer reused from chunk to chunk, read back without copying.
+	 */
+	private static final class CsvBuffer extends ByteArrayOutputStream {
+
+		CsvBuffer() {
+			super(64 * 1024);
+		}
+
+		InputStream toInputStream() {
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+	}
+}
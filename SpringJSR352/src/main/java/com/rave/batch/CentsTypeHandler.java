@@ -0,0 +1,88 @@
+package com.rave.batch;
+
+import org.beanio.types.TypeConversionException;
+import org.beanio.types.TypeHandler;
+
+/**
+ * Parses a decimal amount such as <code>1,227.21</code> into a long number of
+ * cents, without going through a BigDecimal. Digits past the cents are rounded
+ * half up.
+ */
+public class CentsTypeHandler implements TypeHandler {
+
+	@Override
+	public Object parse(String text) throws TypeConversionException {
+		if(text == null) {
+			return null;
+		}
+
+		int start = 0;
+		int end = text.length();
+		while(start < end && Character.isWhitespace(text.charAt(start))) {
+			start++;
+		}
+		while(end > start && Character.isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		if(start == end) {
+			return null;
+		}
+
+		final boolean negative = text.charAt(start) == '-';
+		if(negative || text.charAt(start) == '+') {
+			start++;
+		}
+
+		long units = 0;
+		long cents = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		boolean roundUp = false;
+		for(int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+			if(c >= '0' && c <= '9') {
+				digits++;
+				if(fractionDigits < 0) {
+					if(units > (Long.MAX_VALUE / 100 - (c - '0')) / 10) {
+						throw new TypeConversionException("Amount '" + text + "' is out of range");
+					}
+					units = units * 10 + (c - '0');
+				} else if(fractionDigits < 2) {
+					cents = cents * 10 + (c - '0');
+					fractionDigits++;
+				} else if(fractionDigits++ == 2) {
+					roundUp = c >= '5';
+				}
+			} else if(c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else if(c != ',' || fractionDigits >= 0 || digits == 0) {
+				throw new TypeConversionException("Invalid amount '" + text + "'");
+			}
+		}
+		if(digits == 0) {
+			throw new TypeConversionException("Invalid amount '" + text + "'");
+		}
+
+		if(fractionDigits == 1) {
+			cents *= 10;
+		}
+		final long value = units * 100 + cents + (roundUp ? 1 : 0);
+		return Long.valueOf(negative ? -value : value);
+	}
+
+	@Override
+	public String format(Object value) {
+		if(value == null) {
+			return null;
+		}
+		final long cents = ((Number) value).longValue();
+		final long abs = Math.abs(cents);
+		final long fraction = abs % 100;
+		return (cents < 0 ? "-" : "") + (abs / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+	}
+
+	@Override
+	public Class<?> getType() {
+		return Long.class;
+	}
+}
@@ -0,0 +1,53 @@
+package com.rave.batch;
+
+import javax.batch.api.chunk.listener.ChunkListener;
+import javax.batch.api.listener.StepListener;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+
+/**
+ * Records the duration of each chunk, from its start to its commit, and the
+ * chunks rolled back in the StepMetrics of the step. The metrics are reported
+ * a last time and released when the step, or partition, ends. They are
+ * created by the first chunk, so the parent of a partitioned step, which runs
+ * none, has no metrics of its own.
+ */
+public class ChunkMetricsListener implements ChunkListener, StepListener {
+
+	@Inject
+	private JobContext jobContext;
+
+	@Inject
+	private StepContext stepContext;
+
+	private StepMetrics metrics;
+	private long chunkStart;
+
+	@Override
+	public void beforeStep() throws Exception {
+	}
+
+	@Override
+	public void beforeChunk() throws Exception {
+		if(metrics == null) {
+			metrics = MetricsRegistry.get(jobContext, stepContext);
+		}
+		chunkStart = System.nanoTime();
+	}
+
+	@Override
+	public void onError(Exception ex) throws Exception {
+		metrics.rollbacks.increment();
+	}
+
+	@Override
+	public void afterChunk() throws Exception {
+		metrics.chunk.recordNanos(System.nanoTime() - chunkStart);
+	}
+
+	@Override
+	public void afterStep() throws Exception {
+		MetricsRegistry.release(jobContext.getExecutionId(), stepContext.getStepName());
+	}
+}
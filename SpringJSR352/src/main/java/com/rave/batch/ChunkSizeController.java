@@ -0,0 +1,155 @@
+package com.rave.batch;
+
+import javax.batch.runtime.context.StepContext;
+
+/**
+ * Chunk size of a step (or partition), adjusted after every chunk. It is shared
+ * between the AdaptiveCheckpointAlgorithm, which counts the items of the chunk,
+ * and the AdaptiveChunkListener, which times its write and commit, through
+ * the transient user data of the step context.
+ *
+ * With a target commit time, the size is moved toward the number of items
+ * that can be committed in that time, at most doubling or halving per chunk.
+ * With a target item count, the size grows toward it. Either way a failed
+ * chunk halves the size and holds it for 2, 4, 8 ... up to 64 chunks, the hold
+ * doubling with each consecutive failure.
+ */
+final class ChunkSizeController {
+
+	private static final int MAX_HOLD = 64;
+
+	/**
+	 * Weight of the last chunk in the average time per item
+	 */
+	private static final double SMOOTHING = 0.3;
+
+	private final int minItemCount;
+	private final int maxItemCount;
+	private final long targetNanos;
+	private final int targetItemCount;
+
+	private int itemCount;
+	private int chunkItems;
+	private double nanosPerItem;
+
+	private int consecutiveFailures;
+	private int hold;
+
+	private long chunks;
+	private long failures;
+
+	/**
+	 * @param targetCommitMillis target duration of the write and commit of a
+	 *        chunk, or 0 to aim for <code>targetItemCount</code> instead
+	 */
+	ChunkSizeController(int minItemCount, int maxItemCount, int initialItemCount, long targetCommitMillis,
+			int targetItemCount) {
+		if(minItemCount < 1 || maxItemCount < minItemCount) {
+			throw new IllegalArgumentException("Invalid chunk size bounds [" + minItemCount + ", " + maxItemCount + "]");
+		}
+		if(targetCommitMillis <= 0 && targetItemCount <= 0) {
+			throw new IllegalArgumentException("Either a target commit time or a target item count is required");
+		}
+		this.minItemCount = minItemCount;
+		this.maxItemCount = maxItemCount;
+		this.targetNanos = targetCommitMillis * 1000000L;
+		this.targetItemCount = clamp(targetItemCount);
+		this.itemCount = clamp(initialItemCount);
+	}
+
+	/**
+	 * Controller stored in the step context, or null if none was created yet
+	 */
+	static ChunkSizeController get(StepContext stepContext) {
+		final Object data = stepContext.getTransientUserData();
+		return data instanceof ChunkSizeController ? (ChunkSizeController) data : null;
+	}
+
+	/**
+	 * Stores the controller in the step context. The transient user data must not
+	 * be used for anything else by the step.
+	 */
+	void register(StepContext stepContext) {
+		final Object data = stepContext.getTransientUserData();
+		if(data != null && data != this) {
+			throw new IllegalStateException("Transient user data of step " + stepContext.getStepName()
+					+ " is already in use : " + data);
+		}
+		stepContext.setTransientUserData(this);
+	}
+
+	void beginChunk() {
+		chunkItems = 0;
+	}
+
+	/**
+	 * Counts an item read into the current chunk
+	 *
+	 * @return true when the chunk is full
+	 */
+	boolean itemRead() {
+		return ++chunkItems >= itemCount;
+	}
+
+	/**
+	 * Adjusts the size after a chunk was written and committed in
+	 * <code>nanos</code>
+	 */
+	void chunkCommitted(long nanos) {
+		chunks++;
+		consecutiveFailures = 0;
+		if(chunkItems == 0) {
+			return;
+		}
+
+		final double lastNanosPerItem = (double) nanos / chunkItems;
+		nanosPerItem = nanosPerItem == 0 ? lastNanosPerItem
+				: SMOOTHING * lastNanosPerItem + (1 - SMOOTHING) * nanosPerItem;
+
+		int next;
+		if(targetNanos > 0) {
+			final double ideal = nanosPerItem == 0 ? maxItemCount : targetNanos / nanosPerItem;
+			next = (int) Math.max(itemCount / 2, Math.min((long) itemCount * 2, (long) ideal));
+		} else {
+			next = (int) Math.min((long) itemCount * 2, targetItemCount);
+		}
+
+		if(hold > 0) {
+			hold--;
+			next = Math.min(next, itemCount);
+		}
+		itemCount = clamp(next);
+	}
+
+	/**
+	 * Backs off after the chunk was rolled back
+	 */
+	void chunkFailed() {
+		failures++;
+		consecutiveFailures++;
+		hold = Math.min(MAX_HOLD, 1 << Math.min(consecutiveFailures, 6));
+		itemCount = clamp(itemCount / 2);
+	}
+
+	int getItemCount() {
+		return itemCount;
+	}
+
+	long getChunks() {
+		return chunks;
+	}
+
+	long getFailures() {
+		return failures;
+	}
+
+	private int clamp(int value) {
+		return Math.max(minItemCount, Math.min(maxItemCount, value));
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkSizeController [itemCount=" + itemCount + ", chunks=" + chunks + ", failures=" + failures
+				+ ", nanosPerItem=" + (long) nanosPerItem + "]";
+	}
+}
@@ -0,0 +1,104 @@
+package com.rave.batch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compressed input files, read by streaming decompression instead of being
+ * decompressed to disk first. A file is compressed when it starts with the
+ * gzip magic bytes, or is named *.gz, and is then read through a
+ * GZIPInputStream.
+ *
+ * Offsets in a compressed file are offsets in its decompressed bytes. gzip
+ * cannot be read from the middle, so such a file is read by a single
+ * partition, and a restart decompresses the file up to the checkpoint offset
+ * and discards the bytes instead of parsing them again.
+ *
+ * zstd files are detected but rejected, the JDK has no zstd decoder.
+ */
+final class CompressedInput {
+
+	/**
+	 * Default size of the read buffers of compressed files
+	 */
+	static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private static final int GZIP_MAGIC_1 = 0x1f;
+	private static final int GZIP_MAGIC_2 = 0x8b;
+
+	private static final int[] ZSTD_MAGIC = { 0x28, 0xb5, 0x2f, 0xfd };
+
+	private CompressedInput() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Whether the file is compressed, by its first bytes or its extension
+	 */
+	static boolean isCompressed(File file) throws IOException {
+		final String name = file.getName().toLowerCase();
+		final int[] magic = readMagic(file);
+		if(name.endsWith(".zst") || name.endsWith(".zstd") || startsWith(magic, ZSTD_MAGIC)) {
+			throw new IllegalArgumentException("zstd compressed files are not supported, decompress " + file
+					+ " or compress it with gzip");
+		}
+		return name.endsWith(".gz") || startsWith(magic, new int[] { GZIP_MAGIC_1, GZIP_MAGIC_2 });
+	}
+
+	/**
+	 * Opens the decompressed bytes of the file, positioned at the given offset
+	 * of the decompressed bytes
+	 */
+	static InputStream open(File file, long offset, int bufferSize) throws IOException {
+		final InputStream in = new GZIPInputStream(new FileInputStream(file), bufferSize);
+		try {
+			skipFully(in, offset, bufferSize);
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+		return in;
+	}
+
+	/**
+	 * Discards <code>count</code> bytes. InputStream.skip of GZIPInputStream
+	 * decompresses through a 512 bytes buffer, a larger one is used here.
+	 */
+	private static void skipFully(InputStream in, long count, int bufferSize) throws IOException {
+		final byte[] buffer = new byte[(int) Math.min(bufferSize, Math.max(count, 1))];
+		long skipped = 0;
+		while(skipped < count) {
+			final int read = in.read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+			if(read < 0) {
+				throw new IllegalStateException("Offset " + count + " is past the end of the decompressed file, "
+						+ "which ends at " + skipped + ", the file has changed since the checkpoint was taken");
+			}
+			skipped += read;
+		}
+	}
+
+	private static int[] readMagic(File file) throws IOException {
+		final int[] magic = new int[ZSTD_MAGIC.length];
+		final InputStream in = new FileInputStream(file);
+		try {
+			for(int i = 0; i < magic.length; i++) {
+				magic[i] = in.read();
+			}
+		} finally {
+			in.close();
+		}
+		return magic;
+	}
+
+	private static boolean startsWith(int[] bytes, int[] prefix) {
+		for(int i = 0; i < prefix.length; i++) {
+			if(bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,51 +1,557 @@
 package com.rave.batch;
 
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.batch.api.BatchProperty;
 import javax.batch.api.chunk.AbstractItemWriter;
+import javax.batch.api.chunk.ItemProcessor;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.support.JdbcUtils;
 
 import com.rave.model.Report;
+import com.rave.model.TypedReport;
 
+/**
+ * Writes the chunk into RAW_REPORT, or TYPED_REPORT for TypedReport items, with
+ * JDBC batch inserts. The items are first validated by the ReportProcessor, or
+ * the given <code>processor</code>, on <code>threads</code> threads, see
+ * ParallelChunkProcessor: the invalid ones are counted as process skips of the
+ * step and not written. The chunk is sent
+ * through a single prepared statement, executed every <code>batchSize</code>
+ * rows. With <code>multiRowInsert</code> each statement inserts
+ * <code>batchSize</code> rows at once, the same rewrite MySQL Connector/J
+ * does with rewriteBatchedStatements.
+ *
+ * With <code>quarantine</code> a chunk whose rows the database rejects with a
+ * data error (SQLState class 22 or 23) is bisected under savepoints of the
+ * chunk transaction: the halves that insert are kept, the failing ones are
+ * split again down to the bad items, which are written to BATCH_QUARANTINE
+ * with the reason. The good items then commit with the chunk instead of the
+ * whole chunk being retried. Any other failure, e.g. a deadlock, a lock
+ * timeout or a broken connection, fails the chunk: on MySQL a deadlock has
+ * already rolled the whole transaction back. Transient failures are thrown as
+ * TransientDataAccessException, for the step to retry the chunk. A retried
+ * chunk waits for an exponential backoff before it is written again.
+ * The rows written by each chunk are logged at debug level, the totals when
+ * the writer is closed.
+ */
 public class DatabaseWriter extends AbstractItemWriter {
 
+	private static final Log LOG = LogFactory.getLog(DatabaseWriter.class);
+
+	/**
+	 * Default number of rows sent to the database per round trip
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	/**
+	 * Default first backoff before a retried chunk, doubled on every following
+	 * retry
+	 */
+	public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 50;
+
+	/**
+	 * Default longest backoff before a retried chunk
+	 */
+	public static final long DEFAULT_MAX_RETRY_BACKOFF_MILLIS = 5000;
+
+	private static final String QUARANTINE_SQL = "insert into BATCH_QUARANTINE"
+			+ "(QUARANTINE_TIME,JOB_NAME,JOB_EXECUTION_ID,STEP_NAME,ITEM,REASON) values (?, ?, ?, ?, ?, ?)";
+
+	/**
+	 * SQLState classes of the data exceptions and of the integrity constraint
+	 * violations, the failures of the rows themselves
+	 */
+	private static final String DATA_EXCEPTION = "22";
+	private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+	private static final int MAX_ITEM_LENGTH = 1000;
+	private static final int MAX_REASON_LENGTH = 1000;
+
+	private static final RowMapping RAW_REPORT = 
+			new RowMapping("insert into RAW_REPORT(DATE,IMPRESSIONS,CLICKS,EARNINGS) values ", 4) {
+
+		@Override
+		void bind(PreparedStatement ps, int offset, Object item) throws SQLException {
+			final Report report = (Report) item;
+			ps.setString(offset + 1, report.getDate());
+			ps.setString(offset + 2, report.getImpressions());
+			ps.setString(offset + 3, report.getClicks());
+			ps.setString(offset + 4, report.getEarning());
+		}
+	};
+
+	private static final RowMapping TYPED_REPORT = 
+			new RowMapping("insert into TYPED_REPORT(REPORT_DAY,IMPRESSIONS,CLICKS,EARNINGS_CENTS) values ", 4) {
+
+		@Override
+		void bind(PreparedStatement ps, int offset, Object item) throws SQLException {
+			final TypedReport report = (TypedReport) item;
+			ps.setInt(offset + 1, report.getDay());
+			ps.setLong(offset + 2, report.getImpressions());
+			ps.setLong(offset + 3, report.getClicks());
+			ps.setLong(offset + 4, report.getEarningCents());
+		}
+	};
+
 	@Autowired
 	DataSource dataSource;
 
+	@Inject
+	private JobContext jobContext;
+
+	@Inject
+	private StepContext stepContext;
+
 	@Inject
 	@BatchProperty
 	private String name;
-	
 
-	private static int count = 0;
+	/**
+	 * Number of rows per executed batch, or per statement in multi row mode.
+	 * If not provided, default is 500
+	 */
+	@Inject
+	@BatchProperty
+	private String batchSize;
+
+	/**
+	 * If true, rows are inserted with multi row insert statements
+	 */
+	@Inject
+	@BatchProperty
+	private String multiRowInsert;
+
+	/**
+	 * Number of the chunk that fails with a SkipException, used to simulate the
+	 * retry scenario. If not provided, no chunk fails
+	 */
+	@Inject
+	@BatchProperty
+	private String failOnChunk;
+
+	/**
+	 * If true, the items rejected by the database are isolated and written to
+	 * BATCH_QUARANTINE instead of failing the chunk
+	 */
+	@Inject
+	@BatchProperty
+	private String quarantine;
+
+	/**
+	 * First backoff before a retried chunk, in milliseconds, doubled on every
+	 * following retry. If not provided, default is 50
+	 */
+	@Inject
+	@BatchProperty
+	private String retryBackoffMillis;
+
+	/**
+	 * Longest backoff before a retried chunk, in milliseconds. If not provided,
+	 * default is 5000
+	 */
+	@Inject
+	@BatchProperty
+	private String maxRetryBackoffMillis;
+
+	/**
+	 * Class name of the ItemProcessor run over the items before they are
+	 * written. If not provided, default is ReportProcessor
+	 */
+	@Inject
+	@BatchProperty
+	private String processor;
+
+	/**
+	 * Number of threads processing each chunk, the chunk thread included. If not
+	 * provided, the number of processors
+	 */
+	@Inject
+	@BatchProperty
+	private String threads;
+
+	/**
+	 * Most items skipped by the step, the ones failing the processor included.
+	 * If not provided, there is no limit
+	 */
+	@Inject
+	@BatchProperty
+	private String skipLimit;
+
+	private JdbcTemplate jdbcTemplate;
+	private int rowsPerBatch;
+	private boolean multiRow;
+	private int chunkToFail;
+	private boolean isolateFailures;
+	private long backoffMillis;
+	private long maxBackoffMillis;
+	private ParallelChunkProcessor chunkProcessor;
+
+	private int chunks = 0;
+	private long rowsWritten = 0;
+	private long writeNanos = 0;
+	private long rowsQuarantined = 0;
+	private int failedAttempts = 0;
 
 	@Override
-	public void writeItems(List<Object> items) throws Exception {
+	public void open(Serializable checkpoint) throws Exception {
 
-		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-	
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		rowsPerBatch = isEmpty(batchSize) ? DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize.trim());
+		if(rowsPerBatch < 1) {
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+		multiRow = Boolean.parseBoolean(multiRowInsert);
+		chunkToFail = isEmpty(failOnChunk) ? -1 : Integer.parseInt(failOnChunk.trim());
+		isolateFailures = Boolean.parseBoolean(quarantine);
+		backoffMillis = isEmpty(retryBackoffMillis) ? DEFAULT_RETRY_BACKOFF_MILLIS
+				: Long.parseLong(retryBackoffMillis.trim());
+		maxBackoffMillis = isEmpty(maxRetryBackoffMillis) ? DEFAULT_MAX_RETRY_BACKOFF_MILLIS
+				: Long.parseLong(maxRetryBackoffMillis.trim());
+		if(backoffMillis < 0 || maxBackoffMillis < backoffMillis) {
+			throw new IllegalArgumentException("retryBackoffMillis must not be negative, "
+					+ "maxRetryBackoffMillis must not be less than retryBackoffMillis");
+		}
+		chunkProcessor = newChunkProcessor(processor, threads, skipLimit,
+				jobContext == null ? null : MetricsRegistry.get(jobContext, stepContext));
+	}
+
+	@Override
+	public void writeItems(List<Object> chunk) throws Exception {
 
-		List<Object[]> objectList = new ArrayList<Object[]>();
-		for(Object item: items) {
-			Report report = (Report) item;
-			Object[] objectArray = {report.getDate(), report.getImpressions(), report.getClicks(), report.getEarning()};
-			objectList.add(objectArray);
+		// the chunk is written again after a failure, give the database some time
+		if(failedAttempts > 0) {
+			backoff(failedAttempts);
 		}
-		//jdbcTemplate.batchUpdate("insert into RAW_REPORT(DATE,IMPRESSIONS,CLICKS,EARNINGS) values (?,?, ?, ?)", objectList);
-		count++;
-		if(count == 2) {
-			System.out.println("Exception occured for chunk size = " + items.size());
+
+		chunks++;
+		if(chunks == chunkToFail) {
+			System.out.println("Exception occured for chunk size = " + chunk.size());
+			failedAttempts++;
 			throw new SkipException();
 		}
-		
-		System.out.println("Number of Records Persisted = " + items.size());
 
+		final List<Object> items = chunkProcessor.process(chunk);
+		if(items.isEmpty()) {
+			failedAttempts = 0;
+			chunkProcessor.countSkipped();
+			return;
+		}
+
+		final RowMapping mapping = items.get(0) instanceof TypedReport ? TYPED_REPORT : RAW_REPORT;
+		final long start = System.nanoTime();
+		int quarantined = 0;
+		try {
+			if(isolateFailures) {
+				quarantined = writeIsolatingFailures(mapping, items);
+			} else if(multiRow) {
+				insertMultiRow(mapping, items);
+			} else {
+				jdbcTemplate.batchUpdate(mapping.singleRowSql, items, rowsPerBatch, mapping);
+			}
+		} catch (Exception e) {
+			failedAttempts++;
+			throw e;
+		}
+		failedAttempts = 0;
+		chunkProcessor.countSkipped();
+		final long elapsed = System.nanoTime() - start;
+
+		rowsWritten += items.size() - quarantined;
+		rowsQuarantined += quarantined;
+		writeNanos += elapsed;
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("Number of Records Persisted = " + (items.size() - quarantined) + " ("
+					+ rowsPerSecond(items.size(), elapsed) + " rows/s)"
+					+ (quarantined == 0 ? "" : ", quarantined = " + quarantined));
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		if(chunkProcessor != null) {
+			chunkProcessor.shutdown();
+		}
+		System.out.println("Total Records Persisted = " + rowsWritten + " (" + rowsPerSecond(rowsWritten, writeNanos)
+				+ " rows/s)" + (rowsQuarantined == 0 ? "" : ", quarantined = " + rowsQuarantined));
+	}
+
+	/**
+	 * Inserts the items <code>rowsPerBatch</code> rows per statement. All full size
+	 * statements share one prepared statement and are sent as a single batch, the
+	 * remaining rows go in one last statement.
+	 */
+	private void insertMultiRow(final RowMapping mapping, final List<Object> items) {
+
+		jdbcTemplate.execute(new ConnectionCallback<Object>() {
+
+			@Override
+			public Object doInConnection(Connection connection) throws SQLException {
+				insertMultiRow(connection, mapping, items);
+				return null;
+			}
+		});
+	}
+
+	private void insertMultiRow(Connection connection, RowMapping mapping, List<Object> items) throws SQLException {
+		final int fullStatements = items.size() / rowsPerBatch;
+		int row = 0;
+
+		if(fullStatements > 0) {
+			final PreparedStatement ps = connection.prepareStatement(mapping.sql(rowsPerBatch));
+			try {
+				for(int i = 0; i < fullStatements; i++) {
+					for(int j = 0; j < rowsPerBatch; j++) {
+						mapping.bind(ps, j * mapping.columns, items.get(row++));
+					}
+					ps.addBatch();
+				}
+				ps.executeBatch();
+			} finally {
+				JdbcUtils.closeStatement(ps);
+			}
+		}
+
+		final int remaining = items.size() - row;
+		if(remaining > 0) {
+			final PreparedStatement ps = connection.prepareStatement(mapping.sql(remaining));
+			try {
+				for(int j = 0; j < remaining; j++) {
+					mapping.bind(ps, j * mapping.columns, items.get(row++));
+				}
+				ps.executeUpdate();
+			} finally {
+				JdbcUtils.closeStatement(ps);
+			}
+		}
+	}
+
+	/**
+	 * Inserts the items with single row statements, executed every
+	 * <code>rowsPerBatch</code> rows
+	 */
+	private void insertBatch(Connection connection, RowMapping mapping, List<Object> items) throws SQLException {
+		final PreparedStatement ps = connection.prepareStatement(mapping.singleRowSql);
+		try {
+			for(int i = 0; i < items.size(); i++) {
+				mapping.bind(ps, 0, items.get(i));
+				ps.addBatch();
+				if((i + 1) % rowsPerBatch == 0 || i == items.size() - 1) {
+					ps.executeBatch();
+				}
+			}
+		} finally {
+			JdbcUtils.closeStatement(ps);
+		}
+	}
+
+	/**
+	 * Writes the items, quarantining the ones the database rejects with a data
+	 * error. Every item may be quarantined, the other failures are thrown.
+	 *
+	 * @return number of quarantined items
+	 */
+	private int writeIsolatingFailures(final RowMapping mapping, final List<Object> items) {
+
+		return jdbcTemplate.execute(new ConnectionCallback<Integer>() {
+
+			@Override
+			public Integer doInConnection(Connection connection) throws SQLException {
+				final List<Object> rejected = new ArrayList<Object>();
+				final List<SQLException> reasons = new ArrayList<SQLException>();
+				bisect(connection, mapping, items, rejected, reasons);
+				if(!rejected.isEmpty()) {
+					quarantine(connection, rejected, reasons);
+				}
+				return rejected.size();
+			}
+		});
+	}
+
+	/**
+	 * Inserts the items under a savepoint. When they fail with a data error, the
+	 * savepoint is rolled back and each half is inserted the same way, down to
+	 * single items which are added to <code>rejected</code>.
+	 */
+	private void bisect(Connection connection, RowMapping mapping, List<Object> items, List<Object> rejected,
+			List<SQLException> reasons) throws SQLException {
+
+		final SQLException failure = insertUnderSavepoint(connection, mapping, items);
+		if(failure == null) {
+			return;
+		}
+		if(items.size() == 1) {
+			rejected.add(items.get(0));
+			reasons.add(failure);
+			return;
+		}
+		final int half = items.size() / 2;
+		bisect(connection, mapping, items.subList(0, half), rejected, reasons);
+		bisect(connection, mapping, items.subList(half, items.size()), rejected, reasons);
+	}
+
+	/**
+	 * Inserts the items under a savepoint, rolled back when the database rejects
+	 * them with a data error. Any other failure is thrown and fails the chunk,
+	 * the savepoint may not exist anymore.
+	 *
+	 * @return the data error of the items, null if they were inserted
+	 */
+	private SQLException insertUnderSavepoint(Connection connection, RowMapping mapping, List<Object> items)
+			throws SQLException {
+
+		final Savepoint savepoint = connection.setSavepoint();
+		try {
+			if(multiRow) {
+				insertMultiRow(connection, mapping, items);
+			} else {
+				insertBatch(connection, mapping, items);
+			}
+			connection.releaseSavepoint(savepoint);
+			return null;
+		} catch (SQLException e) {
+			if(!isDataError(e)) {
+				throw e;
+			}
+			connection.rollback(savepoint);
+			return e;
+		}
 	}
 
+	/**
+	 * Whether the rows themselves are rejected, by the SQLState class of the
+	 * failure or of the first chained one that has a SQLState
+	 */
+	private static boolean isDataError(SQLException e) {
+		for(SQLException failure = e; failure != null; failure = failure.getNextException()) {
+			final String state = failure.getSQLState();
+			if(state != null && state.length() >= 2) {
+				final String stateClass = state.substring(0, 2);
+				return DATA_EXCEPTION.equals(stateClass) || INTEGRITY_CONSTRAINT_VIOLATION.equals(stateClass);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sleeps before the given retry of a chunk: retryBackoffMillis doubled for
+	 * every earlier retry, at most maxRetryBackoffMillis
+	 */
+	private void backoff(int retry) {
+		final long millis = Math.min(maxBackoffMillis, backoffMillis << Math.min(retry - 1, 30));
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes the rejected items and their reasons to BATCH_QUARANTINE, in the
+	 * chunk transaction
+	 */
+	private void quarantine(Connection connection, List<Object> rejected, List<SQLException> reasons)
+			throws SQLException {
+
+		final long now = System.currentTimeMillis();
+		final PreparedStatement ps = connection.prepareStatement(QUARANTINE_SQL);
+		try {
+			for(int i = 0; i < rejected.size(); i++) {
+				final SQLException reason = reasons.get(i);
+				ps.setLong(1, now);
+				ps.setString(2, jobContext.getJobName());
+				ps.setLong(3, jobContext.getExecutionId());
+				ps.setString(4, stepContext.getStepName());
+				ps.setString(5, truncate(String.valueOf(rejected.get(i)), MAX_ITEM_LENGTH));
+				ps.setString(6, truncate(reason.getSQLState() + " " + reason.getMessage(), MAX_REASON_LENGTH));
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		} finally {
+			JdbcUtils.closeStatement(ps);
+		}
+	}
+
+	/**
+	 * ParallelChunkProcessor of the writer properties, shared by the writers
+	 */
+	static ParallelChunkProcessor newChunkProcessor(String processor, String threads, String skipLimit,
+			StepMetrics metrics) throws Exception {
+
+		final ItemProcessor itemProcessor = isEmpty(processor) ? new ReportProcessor()
+				: (ItemProcessor) Class.forName(processor.trim()).getDeclaredConstructor().newInstance();
+		return new ParallelChunkProcessor(itemProcessor,
+				isEmpty(threads) ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads.trim()),
+				isEmpty(skipLimit) ? -1 : Integer.parseInt(skipLimit.trim()), metrics);
+	}
+
+	private static String truncate(String value, int length) {
+		return value.length() <= length ? value : value.substring(0, length);
+	}
+
+	private static long rowsPerSecond(long rows, long nanos) {
+		return nanos == 0 ? 0 : rows * 1000000000L / nanos;
+	}
+
+	private static boolean isEmpty(String value) {
+		return value == null || value.trim().length() == 0;
+	}
+
+	/**
+	 * Insert statement of an item type and how an item is bound to it
+	 */
+	private abstract static class RowMapping implements ParameterizedPreparedStatementSetter<Object> {
+
+		private final String insertSql;
+		private final int columns;
+		private final String singleRowSql;
+
+		RowMapping(String insertSql, int columns) {
+			this.insertSql = insertSql;
+			this.columns = columns;
+			this.singleRowSql = sql(1);
+		}
+
+		/**
+		 * Binds the item columns starting after parameter <code>offset</code>
+		 */
+		abstract void bind(PreparedStatement ps, int offset, Object item) throws SQLException;
+
+		@Override
+		public void setValues(PreparedStatement ps, Object item) throws SQLException {
+			bind(ps, 0, item);
+		}
+
+		/**
+		 * Insert statement for the given number of rows
+		 */
+		String sql(int rows) {
+			final StringBuilder sql = new StringBuilder(insertSql.length() + rows * (columns * 3 + 2));
+			sql.append(insertSql);
+			for(int i = 0; i < rows; i++) {
+				sql.append(i == 0 ? "(" : ", (");
+				for(int j = 0; j < columns; j++) {
+					sql.append(j == 0 ? "?" : ", ?");
+				}
+				sql.append(')');
+			}
+			return sql.toString();
+		}
+	}
 }
@@ -0,0 +1,105 @@
+package com.rave.batch;
+
+import org.beanio.types.TypeConversionException;
+import org.beanio.types.TypeHandler;
+
+/**
+ * Parses a <code>M/d/yyyy</code> date into the number of days since 1970-01-01,
+ * reading the digits in place instead of going through a DateFormat and Calendar.
+ */
+public class EpochDayTypeHandler implements TypeHandler {
+
+	private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+	@Override
+	public Object parse(String text) throws TypeConversionException {
+		if(text == null) {
+			return null;
+		}
+
+		int start = 0;
+		int end = text.length();
+		while(start < end && Character.isWhitespace(text.charAt(start))) {
+			start++;
+		}
+		while(end > start && Character.isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		if(start == end) {
+			return null;
+		}
+
+		// month, day and year in a single pass over the digits
+		int month = 0;
+		int day = 0;
+		int year = 0;
+		int field = 0;
+		int digits = 0;
+		for(int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+			if(c == '/' && digits > 0 && field < 2) {
+				field++;
+				digits = 0;
+			} else if(c >= '0' && c <= '9' && digits < 4) {
+				digits++;
+				if(field == 0) {
+					month = month * 10 + (c - '0');
+				} else if(field == 1) {
+					day = day * 10 + (c - '0');
+				} else {
+					year = year * 10 + (c - '0');
+				}
+			} else {
+				throw new TypeConversionException("Invalid date '" + text + "', expected M/d/yyyy");
+			}
+		}
+		if(field != 2 || digits == 0) {
+			throw new TypeConversionException("Invalid date '" + text + "', expected M/d/yyyy");
+		}
+
+		if(month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]
+				|| (month == 2 && day == 29 && !isLeapYear(year))) {
+			throw new TypeConversionException("Invalid date '" + text + "', expected M/d/yyyy");
+		}
+		return Integer.valueOf(toEpochDay(year, month, day));
+	}
+
+	@Override
+	public String format(Object value) {
+		if(value == null) {
+			return null;
+		}
+		// civil from days, the inverse of toEpochDay
+		final long z = ((Number) value).longValue() + 719468;
+		final long era = (z >= 0 ? z : z - 146096) / 146097;
+		final long doe = z - era * 146097;
+		final long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		final long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		final long mp = (5 * doy + 2) / 153;
+		final long day = doy - (153 * mp + 2) / 5 + 1;
+		final long month = mp < 10 ? mp + 3 : mp - 9;
+		final long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+		return month + "/" + day + "/" + year;
+	}
+
+	@Override
+	public Class<?> getType() {
+		return Integer.class;
+	}
+
+	/**
+	 * Days since 1970-01-01 of a proleptic Gregorian date
+	 */
+	static int toEpochDay(int year, int month, int day) {
+		final int y = month <= 2 ? year - 1 : year;
+		final int era = (y >= 0 ? y : y - 399) / 400;
+		final int yoe = y - era * 400;
+		final int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+}
@@ -0,0 +1,65 @@
+package com.rave.batch;
+
+import org.beanio.types.TypeConversionException;
+import org.beanio.types.TypeHandler;
+
+/**
+ * Parses an integer that may use commas as grouping separators, such as
+ * <code>139,237</code>, accumulating the digits in place instead of stripping
+ * the separators into a new string first.
+ */
+public class GroupedLongTypeHandler implements TypeHandler {
+
+	@Override
+	public Object parse(String text) throws TypeConversionException {
+		if(text == null) {
+			return null;
+		}
+
+		int start = 0;
+		int end = text.length();
+		while(start < end && Character.isWhitespace(text.charAt(start))) {
+			start++;
+		}
+		while(end > start && Character.isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		if(start == end) {
+			return null;
+		}
+
+		final boolean negative = text.charAt(start) == '-';
+		if(negative || text.charAt(start) == '+') {
+			start++;
+		}
+
+		long value = 0;
+		int digits = 0;
+		for(int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+			if(c >= '0' && c <= '9') {
+				if(value > (Long.MAX_VALUE - (c - '0')) / 10) {
+					throw new TypeConversionException("Number '" + text + "' is out of range");
+				}
+				value = value * 10 + (c - '0');
+				digits++;
+			} else if(c != ',' || digits == 0) {
+				throw new TypeConversionException("Invalid number '" + text + "'");
+			}
+		}
+		if(digits == 0) {
+			throw new TypeConversionException("Invalid number '" + text + "'");
+		}
+		return Long.valueOf(negative ? -value : value);
+	}
+
+	@Override
+	public String format(Object value) {
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public Class<?> getType() {
+		return Long.class;
+	}
+}
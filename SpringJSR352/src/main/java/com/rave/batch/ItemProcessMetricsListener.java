@@ -0,0 +1,55 @@
+package com.rave.batch;
+
+import javax.batch.api.chunk.listener.ItemProcessListener;
+import javax.batch.api.chunk.listener.RetryProcessListener;
+import javax.batch.api.chunk.listener.SkipProcessListener;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+
+/**
+ * Records the time taken to process each item, the items filtered out, and
+ * the process errors, skips and retries in the StepMetrics of the step.
+ */
+public class ItemProcessMetricsListener implements ItemProcessListener, SkipProcessListener, RetryProcessListener {
+
+	@Inject
+	private JobContext jobContext;
+
+	@Inject
+	private StepContext stepContext;
+
+	private StepMetrics metrics;
+	private long processStart;
+
+	@Override
+	public void beforeProcess(Object item) throws Exception {
+		if(metrics == null) {
+			metrics = MetricsRegistry.get(jobContext, stepContext);
+		}
+		processStart = System.nanoTime();
+	}
+
+	@Override
+	public void afterProcess(Object item, Object result) throws Exception {
+		metrics.process.recordNanos(System.nanoTime() - processStart);
+		if(result == null) {
+			metrics.itemsFiltered.increment();
+		}
+	}
+
+	@Override
+	public void onProcessError(Object item, Exception ex) throws Exception {
+		metrics.processErrors.increment();
+	}
+
+	@Override
+	public void onSkipProcessItem(Object item, Exception ex) throws Exception {
+		MetricsRegistry.get(jobContext, stepContext).processSkips.increment();
+	}
+
+	@Override
+	public void onRetryProcessException(Object item, Exception ex) throws Exception {
+		MetricsRegistry.get(jobContext, stepContext).processRetries.increment();
+	}
+}
@@ -0,0 +1,55 @@
+package com.rave.batch;
+
+import javax.batch.api.chunk.listener.ItemReadListener;
+import javax.batch.api.chunk.listener.RetryReadListener;
+import javax.batch.api.chunk.listener.SkipReadListener;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+
+/**
+ * Records the time taken to read and parse each item, and the read errors,
+ * skips and retries in the StepMetrics of the step.
+ */
+public class ItemReadMetricsListener implements ItemReadListener, SkipReadListener, RetryReadListener {
+
+	@Inject
+	private JobContext jobContext;
+
+	@Inject
+	private StepContext stepContext;
+
+	private StepMetrics metrics;
+	private long readStart;
+
+	@Override
+	public void beforeRead() throws Exception {
+		if(metrics == null) {
+			metrics = MetricsRegistry.get(jobContext, stepContext);
+		}
+		readStart = System.nanoTime();
+	}
+
+	@Override
+	public void afterRead(Object item) throws Exception {
+		// null marks the end of the input, not an item
+		if(item != null) {
+			metrics.read.recordNanos(System.nanoTime() - readStart);
+		}
+	}
+
+	@Override
+	public void onReadError(Exception ex) throws Exception {
+		metrics.readErrors.increment();
+	}
+
+	@Override
+	public void onSkipReadItem(Exception ex) throws Exception {
+		MetricsRegistry.get(jobContext, stepContext).readSkips.increment();
+	}
+
+	@Override
+	public void onRetryReadException(Exception ex) throws Exception {
+		MetricsRegistry.get(jobContext, stepContext).readRetries.increment();
+	}
+}
@@ -0,0 +1,55 @@
+package com.rave.batch;
+
+import java.util.List;
+
+import javax.batch.api.chunk.listener.ItemWriteListener;
+import javax.batch.api.chunk.listener.RetryWriteListener;
+import javax.batch.api.chunk.listener.SkipWriteListener;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+
+/**
+ * Records the time taken by each call to the writer, the items written, and
+ * the write errors, skips and retries in the StepMetrics of the step.
+ */
+public class ItemWriteMetricsListener implements ItemWriteListener, SkipWriteListener, RetryWriteListener {
+
+	@Inject
+	private JobContext jobContext;
+
+	@Inject
+	private StepContext stepContext;
+
+	private StepMetrics metrics;
+	private long writeStart;
+
+	@Override
+	public void beforeWrite(List<Object> items) throws Exception {
+		if(metrics == null) {
+			metrics = MetricsRegistry.get(jobContext, stepContext);
+		}
+		writeStart = System.nanoTime();
+	}
+
+	@Override
+	public void afterWrite(List<Object> items) throws Exception {
+		metrics.write.recordNanos(System.nanoTime() - writeStart);
+		metrics.itemsWritten.add(items.size());
+	}
+
+	@Override
+	public void onWriteError(List<Object> items, Exception ex) throws Exception {
+		metrics.writeErrors.increment();
+	}
+
+	@Override
+	public void onSkipWriteItem(List<Object> items, Exception ex) throws Exception {
+		MetricsRegistry.get(jobContext, stepContext).writeSkips.increment();
+	}
+
+	@Override
+	public void onRetryWriteException(List<Object> items, Exception ex) throws Exception {
+		MetricsRegistry.get(jobContext, stepContext).writeRetries.increment();
+	}
+}
@@ -0,0 +1,102 @@
+package com.rave.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Bulk load stand-in for databases without a streaming load API, such as an
+ * embedded database used for local runs. The CSV produced by the BulkLoadWriter
+ * is parsed back and inserted with one JDBC batch, so the writer runs exactly
+ * the same path as against MySQL.
+ */
+public class JdbcBatchLoadStrategy implements BulkLoadStrategy {
+
+	@Override
+	public int load(Connection connection, String table, String[] columns, InputStream csv) 
+			throws SQLException, IOException {
+
+		final StringBuilder sql = new StringBuilder("insert into ").append(table)
+				.append('(').append(BulkLoadWriter.columnList(columns)).append(") values (");
+		for(int i = 0; i < columns.length; i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+		sql.append(')');
+
+		final BufferedReader in = new BufferedReader(new InputStreamReader(csv, BulkLoadWriter.CSV_ENCODING));
+		final PreparedStatement ps = connection.prepareStatement(sql.toString());
+		try {
+			int rows = 0;
+			final List<String> fields = new ArrayList<String>(columns.length);
+			while(readRow(in, fields)) {
+				if(fields.size() != columns.length) {
+					throw new SQLException("Row " + (rows + 1) + " has " + fields.size() + " fields, expected "
+							+ columns.length);
+				}
+				for(int i = 0; i < columns.length; i++) {
+					ps.setString(i + 1, fields.get(i));
+				}
+				ps.addBatch();
+				rows++;
+			}
+			if(rows > 0) {
+				ps.executeBatch();
+			}
+			return rows;
+		} finally {
+			JdbcUtils.closeStatement(ps);
+		}
+	}
+
+	/**
+	 * Parses one row in the format described by BulkLoadStrategy.
+	 *
+	 * @return false at the end of the stream
+	 */
+	private static boolean readRow(BufferedReader in, List<String> fields) throws IOException {
+
+		fields.clear();
+		final StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean isNull = false;
+		int c = in.read();
+		if(c == -1) {
+			return false;
+		}
+
+		while(true) {
+			if(c == -1 || (!quoted && (c == ',' || c == '\n'))) {
+				fields.add(isNull ? null : field.toString());
+				field.setLength(0);
+				isNull = false;
+				if(c != ',') {
+					return true;
+				}
+			} else if(c == '"') {
+				quoted = !quoted;
+			} else if(c == '\\') {
+				final int escaped = in.read();
+				if(escaped == 'N' && !quoted) {
+					isNull = true;
+				} else if(escaped == 'n') {
+					field.append('\n');
+				} else if(escaped == 'r') {
+					field.append('\r');
+				} else if(escaped != -1) {
+					field.append((char) escaped);
+				}
+			} else {
+				field.append((char) c);
+			}
+			c = in.read();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.rave.batch;
+
+import javax.batch.api.listener.JobListener;
+import javax.batch.runtime.context.JobContext;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Publishes the start and end of the job to the AuditSink. The events are
+ * written in the background, the job does not wait for them.
+ */
+public class JobAuditListener implements JobListener {
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Inject
+	private JobContext jobContext;
+
+	@Override
+	public void beforeJob() throws Exception {
+		publish(AuditEvent.JOB_START, null);
+	}
+
+	@Override
+	public void afterJob() throws Exception {
+		publish(AuditEvent.JOB_END, jobContext.getExitStatus());
+	}
+
+	private void publish(String event, String detail) {
+		AuditSink.getInstance(dataSource, transactionManager).publish(new AuditEvent(event, jobContext.getJobName(),
+				jobContext.getExecutionId(), null, String.valueOf(jobContext.getBatchStatus()), detail));
+	}
+}
@@ -0,0 +1,22 @@
+package com.rave.batch;
+
+import javax.batch.api.listener.AbstractJobListener;
+import javax.batch.runtime.context.JobContext;
+import javax.inject.Inject;
+
+import com.rave.BatchUtil;
+
+/**
+ * Signals the end of the job to BatchUtil.whenJobEnds, so that the launcher is
+ * woken up as soon as the job ends instead of at its next poll.
+ */
+public class JobCompletionListener extends AbstractJobListener {
+
+	@Inject
+	private JobContext jobContext;
+
+	@Override
+	public void afterJob() throws Exception {
+		BatchUtil.signalJobEnded(jobContext.getExecutionId());
+	}
+}
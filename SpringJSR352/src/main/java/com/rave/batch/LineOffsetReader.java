@@ -0,0 +1,349 @@
+package com.rave.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader that decodes the underlying bytes one line at a time and remembers
+ * the byte offset at which each line starts. This allows the position of a
+ * record to be checkpointed as a byte offset and restored with a plain seek
+ * instead of re-parsing everything that was already read.
+ *
+ * Line terminators are detected at byte level, so the encoding must be ASCII
+ * compatible (UTF-8, ISO-8859-x, windows-125x, ...). When an end offset is
+ * given, lines starting at or after it are not returned, which lets several
+ * readers share one file split into line aligned ranges.
+ *
+ * The bytes come either from an InputStream through a heap buffer, or from a
+ * FileChannel mapped into memory window by window. Lines made only of ASCII
+ * characters in UTF-8, US-ASCII or ISO-8859-1 files are widened to chars
+ * directly instead of going through the charset decoder.
+ */
+final class LineOffsetReader extends Reader {
+
+	static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	static final int DEFAULT_MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Number of line offsets kept. BeanIO never looks back further than the
+	 * first line of the record it has just returned.
+	 */
+	private static final int OFFSET_HISTORY = 256;
+
+	private final ByteSource source;
+	private final CharsetDecoder decoder;
+	private final boolean asciiFastPath;
+	private final long endOffset;
+
+	private ByteBuffer chunk;
+	private long chunkOffset;
+
+	private byte[] lineBytes = new byte[256];
+	private CharBuffer lineChars = CharBuffer.allocate(256);
+
+	private final long[] lineOffsets = new long[OFFSET_HISTORY];
+	private int lineNumber = 0;
+	private boolean eof = false;
+
+	/**
+	 * @param in stream positioned at <code>startOffset</code>
+	 * @param charset ASCII compatible charset of the stream
+	 * @param startOffset byte offset of the first byte of <code>in</code>
+	 * @param endOffset offset of the first line that must not be returned
+	 * @param bufferSize size of the read buffer
+	 */
+	LineOffsetReader(InputStream in, Charset charset, long startOffset, long endOffset, int bufferSize) {
+		this(new StreamSource(in, bufferSize), charset, startOffset, endOffset);
+	}
+
+	private LineOffsetReader(ByteSource source, Charset charset, long startOffset, long endOffset) {
+		this.source = source;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.asciiFastPath = isAsciiSuperset(charset);
+		this.endOffset = endOffset;
+		this.chunk = ByteBuffer.allocate(0);
+		this.chunkOffset = startOffset;
+		this.lineChars.flip();
+	}
+
+	/**
+	 * Creates a reader over a memory mapped file. The file is mapped in windows
+	 * of <code>windowSize</code> bytes so that files larger than 2GB can be read.
+	 */
+	static LineOffsetReader mapped(FileChannel channel, Charset charset, long startOffset, long endOffset,
+			int windowSize) {
+		return new LineOffsetReader(new MappedSource(channel, startOffset, windowSize), charset, startOffset,
+				endOffset);
+	}
+
+	/**
+	 * Whether line terminators of the given charset can be found by looking for
+	 * a single <code>'\n'</code> byte.
+	 */
+	static boolean isSupported(Charset charset) {
+		final byte[] newLine = "\n".getBytes(charset);
+		return charset.canEncode() && newLine.length == 1 && newLine[0] == '\n';
+	}
+
+	private static boolean isAsciiSuperset(Charset charset) {
+		final String name = charset.name();
+		return "UTF-8".equals(name) || "US-ASCII".equals(name) || "ISO-8859-1".equals(name);
+	}
+
+	/**
+	 * Returns the byte offset at which the given line (1 based, as reported by
+	 * BeanIO) starts.
+	 */
+	long getLineOffset(int line) {
+		if(line < 1 || line > lineNumber || line <= lineNumber - OFFSET_HISTORY) {
+			throw new IllegalStateException("Offset of line " + line + " is no longer available, current line is "
+					+ lineNumber);
+		}
+		return lineOffsets[line % OFFSET_HISTORY];
+	}
+
+	/**
+	 * Byte offset of the next byte that has not been decoded yet.
+	 */
+	long getPosition() {
+		return chunkOffset + chunk.position();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!lineChars.hasRemaining() && !nextLine()) {
+			return -1;
+		}
+		return lineChars.get();
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		if(!lineChars.hasRemaining() && !nextLine()) {
+			return -1;
+		}
+		final int count = Math.min(len, lineChars.remaining());
+		lineChars.get(cbuf, off, count);
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+	/**
+	 * Loads and decodes the next line, including its terminator.
+	 *
+	 * @return false when the end of the stream has been reached
+	 */
+	private boolean nextLine() throws IOException {
+		if(eof) {
+			return false;
+		}
+
+		final long lineStart = getPosition();
+		if(lineStart >= endOffset) {
+			eof = true;
+			return false;
+		}
+
+		int length = 0;
+		boolean terminated = false;
+		while(!terminated) {
+			if(!chunk.hasRemaining() && !fill()) {
+				break;
+			}
+			final int start = chunk.position();
+			final int limit = chunk.limit();
+			int end = start;
+			while(end < limit && chunk.get(end) != '\n') {
+				end++;
+			}
+			if(end < limit) {
+				end++;
+				terminated = true;
+			}
+
+			if(terminated && length == 0) {
+				// the whole line is in the current chunk, decode it in place
+				startLine(lineStart);
+				chunk.limit(end);
+				decodeLine(chunk, end - start);
+				chunk.limit(limit);
+				return true;
+			}
+
+			length = appendToLine(end - start, length);
+		}
+
+		if(length == 0) {
+			eof = true;
+			return false;
+		}
+
+		startLine(lineStart);
+		decodeLine(ByteBuffer.wrap(lineBytes, 0, length), length);
+		return true;
+	}
+
+	private void startLine(long lineStart) {
+		lineNumber++;
+		lineOffsets[lineNumber % OFFSET_HISTORY] = lineStart;
+	}
+
+	/**
+	 * Moves on to the next chunk of bytes, once the current one is consumed.
+	 */
+	private boolean fill() throws IOException {
+		final long nextOffset = chunkOffset + chunk.limit();
+		final ByteBuffer next = source.next();
+		if(next == null) {
+			return false;
+		}
+		chunk = next;
+		chunkOffset = nextOffset;
+		return true;
+	}
+
+	/**
+	 * Moves <code>count</code> bytes of the current chunk to the line buffer.
+	 */
+	private int appendToLine(int count, int length) {
+		if(length + count > lineBytes.length) {
+			final byte[] grown = new byte[Math.max(lineBytes.length * 2, length + count)];
+			System.arraycopy(lineBytes, 0, grown, 0, length);
+			lineBytes = grown;
+		}
+		chunk.get(lineBytes, length, count);
+		return length + count;
+	}
+
+	/**
+	 * Decodes the remaining <code>length</code> bytes of <code>bytes</code> into
+	 * <code>lineChars</code> and consumes them.
+	 */
+	private void decodeLine(ByteBuffer bytes, int length) {
+		final int maxChars = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+		if(lineChars.capacity() < maxChars) {
+			lineChars = CharBuffer.allocate(maxChars);
+		}
+		lineChars.clear();
+
+		if(asciiFastPath && widenAscii(bytes, length)) {
+			return;
+		}
+
+		decoder.reset();
+		decoder.decode(bytes, lineChars, true);
+		decoder.flush(lineChars);
+		lineChars.flip();
+	}
+
+	/**
+	 * Copies the bytes to chars one to one if they are all ASCII.
+	 *
+	 * @return false, leaving <code>bytes</code> untouched, if a non ASCII byte was found
+	 */
+	private boolean widenAscii(ByteBuffer bytes, int length) {
+		final char[] chars = lineChars.array();
+		final int start = bytes.position();
+		for(int i = 0; i < length; i++) {
+			final byte b = bytes.get(start + i);
+			if(b < 0) {
+				return false;
+			}
+			chars[i] = (char) b;
+		}
+		bytes.position(start + length);
+		lineChars.limit(length);
+		return true;
+	}
+
+	/**
+	 * Supplies the bytes to read as a sequence of buffers, each one starting
+	 * where the previous one ended.
+	 */
+	private interface ByteSource {
+
+		/**
+		 * @return the next bytes, positioned at 0, or null at the end of the input
+		 */
+		ByteBuffer next() throws IOException;
+
+		void close() throws IOException;
+	}
+
+	private static final class StreamSource implements ByteSource {
+
+		private final InputStream in;
+		private final ByteBuffer buffer;
+
+		StreamSource(InputStream in, int bufferSize) {
+			this.in = in;
+			this.buffer = ByteBuffer.allocate(bufferSize);
+		}
+
+		@Override
+		public ByteBuffer next() throws IOException {
+			final int count = in.read(buffer.array(), 0, buffer.capacity());
+			if(count <= 0) {
+				return null;
+			}
+			buffer.clear();
+			buffer.limit(count);
+			return buffer;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps the file window by window. Mappings are released by the garbage
+	 * collector once the window is no longer referenced.
+	 */
+	private static final class MappedSource implements ByteSource {
+
+		private final FileChannel channel;
+		private final int windowSize;
+		private long position;
+
+		MappedSource(FileChannel channel, long startOffset, int windowSize) {
+			this.channel = channel;
+			this.windowSize = windowSize;
+			this.position = startOffset;
+		}
+
+		@Override
+		public ByteBuffer next() throws IOException {
+			final long size = Math.min(windowSize, channel.size() - position);
+			if(size <= 0) {
+				return null;
+			}
+			final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			position += size;
+			return window;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.rave.batch;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * StepMetrics of the running steps. Each one is registered as an MBean named
+ * <code>com.rave.batch:type=StepMetrics,job=...,execution=...,step=...</code>
+ * until its step ends.
+ *
+ * Every <code>-Dmetrics.interval</code> seconds (default 10, 0 disables it) the
+ * metrics of the running steps are printed, and appended to the
+ * <code>-Dmetrics.csv</code> file when set. They are printed and appended a
+ * last time when the step ends.
+ */
+final class MetricsRegistry {
+
+	private static final ConcurrentMap<String, StepMetrics> METRICS = new ConcurrentHashMap<String, StepMetrics>();
+
+	private static final long INTERVAL = Long.getLong("metrics.interval", 10);
+	private static final String CSV_FILE = System.getProperty("metrics.csv");
+
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+		final Thread thread = new Thread(r, "step-metrics");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		if(INTERVAL > 0) {
+			SCHEDULER.scheduleWithFixedDelay(MetricsRegistry::dump, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+		}
+	}
+
+	private MetricsRegistry() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Metrics of the current step execution
+	 */
+	static StepMetrics get(JobContext jobContext, StepContext stepContext) {
+		return get(jobContext.getJobName(), jobContext.getExecutionId(), stepContext.getStepName());
+	}
+
+	/**
+	 * Metrics of the given step execution, created and registered on first use
+	 */
+	static StepMetrics get(String jobName, long jobExecutionId, String stepName) {
+		return METRICS.computeIfAbsent(key(jobExecutionId, stepName), key -> {
+			final StepMetrics metrics = new StepMetrics(jobName, jobExecutionId, stepName);
+			try {
+				getMBeanServer().registerMBean(metrics, objectName(metrics));
+			} catch (JMException e) {
+				System.out.println("Step metrics of " + stepName + " not registered : " + e);
+			}
+			return metrics;
+		});
+	}
+
+	/**
+	 * Reports the metrics of the ended step a last time and unregisters them
+	 */
+	static void release(long jobExecutionId, String stepName) {
+		final StepMetrics metrics = METRICS.remove(key(jobExecutionId, stepName));
+		if(metrics == null) {
+			return;
+		}
+		report(new StepMetrics[] { metrics });
+		try {
+			getMBeanServer().unregisterMBean(objectName(metrics));
+		} catch (JMException e) {
+			System.out.println("Step metrics of " + stepName + " not unregistered : " + e);
+		}
+	}
+
+	/**
+	 * Reports the metrics of all the running steps
+	 */
+	static void dump() {
+		if(!METRICS.isEmpty()) {
+			report(METRICS.values().toArray(new StepMetrics[0]));
+		}
+	}
+
+	private static void report(StepMetrics[] metrics) {
+		for(StepMetrics stepMetrics : metrics) {
+			System.out.println(stepMetrics);
+		}
+		if(CSV_FILE != null) {
+			appendCsv(metrics);
+		}
+	}
+
+	private static synchronized void appendCsv(StepMetrics[] metrics) {
+		final File file = new File(CSV_FILE);
+		final boolean header = !file.exists() || file.length() == 0;
+		final long timestamp = System.currentTimeMillis();
+		try {
+			final Writer writer = new FileWriter(file, true);
+			try {
+				if(header) {
+					writer.write(StepMetrics.CSV_HEADER);
+					writer.write('\n');
+				}
+				for(StepMetrics stepMetrics : metrics) {
+					writer.write(stepMetrics.toCsv(timestamp));
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Step metrics not written to " + CSV_FILE + " : " + e);
+		}
+	}
+
+	private static String key(long jobExecutionId, String stepName) {
+		return jobExecutionId + "/" + stepName;
+	}
+
+	private static ObjectName objectName(StepMetrics metrics) throws JMException {
+		return new ObjectName("com.rave.batch:type=StepMetrics,job=" + ObjectName.quote(metrics.getJobName())
+				+ ",execution=" + metrics.getJobExecutionId() + ",step=" + ObjectName.quote(metrics.getStepName()));
+	}
+
+	private static MBeanServer getMBeanServer() {
+		return ManagementFactory.getPlatformMBeanServer();
+	}
+}
@@ -0,0 +1,44 @@
+package com.rave.batch;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Streams the CSV into MySQL with LOAD DATA LOCAL INFILE, handing the stream
+ * to Connector/J instead of a file on disk.
+ */
+public class MySqlLoadDataStrategy implements BulkLoadStrategy {
+
+	@Override
+	public int load(Connection connection, String table, String[] columns, InputStream csv) throws SQLException {
+
+		final Statement statement = connection.createStatement();
+		try {
+			toMySqlStatement(statement).setLocalInfileInputStream(csv);
+			return statement.executeUpdate("LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + table 
+					+ " CHARACTER SET utf8"
+					+ " FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '\\\\'"
+					+ " LINES TERMINATED BY '\\n'"
+					+ " (" + BulkLoadWriter.columnList(columns) + ")");
+		} finally {
+			JdbcUtils.closeStatement(statement);
+		}
+	}
+
+	/**
+	 * Gets the Connector/J statement behind the pool wrappers
+	 */
+	private static com.mysql.jdbc.Statement toMySqlStatement(Statement statement) throws SQLException {
+		if(statement instanceof com.mysql.jdbc.Statement) {
+			return (com.mysql.jdbc.Statement) statement;
+		}
+		if(statement.isWrapperFor(com.mysql.jdbc.Statement.class)) {
+			return statement.unwrap(com.mysql.jdbc.Statement.class);
+		}
+		throw new SQLException("LOAD DATA LOCAL INFILE streaming requires a MySQL Connector/J connection");
+	}
+}
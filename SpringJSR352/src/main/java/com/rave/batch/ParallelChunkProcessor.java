@@ -0,0 +1,208 @@
+package com.rave.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.batch.api.chunk.ItemProcessor;
+
+import org.beanio.types.TypeConversionException;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.skip.SkipLimitExceededException;
+
+/**
+ * Runs an ItemProcessor over the items of a chunk in parallel, right before
+ * they are written. The chunk is cut into one slice per thread: the first
+ * slice is processed on the chunk thread, the others on a fixed pool owned by
+ * the writer of the step or partition, and the results are returned in the
+ * order of the items. Items the processor filters out (null) or rejects with
+ * a TypeConversionException are left out, and counted by
+ * {@link #countSkipped()} once the chunk is written.
+ */
+public class ParallelChunkProcessor {
+
+	/**
+	 * Smallest slice handed to a worker, smaller chunks are processed on less
+	 * threads
+	 */
+	static final int MIN_SLICE_SIZE = 64;
+
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	private final ItemProcessor processor;
+	private final int threads;
+	private final int skipLimit;
+	private final StepMetrics metrics;
+	private final ExecutorService workers;
+
+	private int filtered;
+	private final List<TypeConversionException> skipped = new ArrayList<TypeConversionException>();
+
+	/**
+	 * @param threads number of threads processing a chunk, the chunk thread
+	 *            included
+	 * @param skipLimit most skipped items per step, negative for no limit
+	 * @param metrics metrics of the step, timing the processing of each item,
+	 *            or null
+	 */
+	public ParallelChunkProcessor(ItemProcessor processor, int threads, int skipLimit, StepMetrics metrics) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.processor = processor;
+		this.threads = threads;
+		this.skipLimit = skipLimit;
+		this.metrics = metrics;
+		if(threads == 1) {
+			workers = null;
+		} else {
+			final int pool = POOL_COUNT.incrementAndGet();
+			final AtomicInteger threadCount = new AtomicInteger();
+			workers = Executors.newFixedThreadPool(threads - 1, r -> {
+				final Thread thread = new Thread(r, "chunk-processor-" + pool + "-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Processes the items of the chunk. The items are only processed by the
+	 * calling thread and the workers of this instance, the processor needs to
+	 * be thread safe.
+	 *
+	 * @return the results in the order of the items, without the filtered and
+	 *         rejected ones
+	 */
+	public List<Object> process(final List<Object> items) throws Exception {
+		filtered = 0;
+		skipped.clear();
+
+		final Object[] results = new Object[items.size()];
+		final TypeConversionException[] failures = new TypeConversionException[items.size()];
+		final int slices = Math.max(1, Math.min(threads, items.size() / MIN_SLICE_SIZE));
+		final List<Future<?>> futures = new ArrayList<Future<?>>(slices - 1);
+		for(int slice = 1; slice < slices; slice++) {
+			final int from = bound(slice, slices, items.size());
+			final int to = bound(slice + 1, slices, items.size());
+			futures.add(workers.submit(() -> {
+				processSlice(items, from, to, results, failures);
+				return null;
+			}));
+		}
+
+		Exception failure = null;
+		try {
+			processSlice(items, 0, bound(1, slices, items.size()), results, failures);
+		} catch(Exception e) {
+			failure = e;
+		}
+		// every slice has to end before the chunk goes on, even after a failure
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+			} catch(ExecutionException e) {
+				if(failure == null) {
+					failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+
+		final List<Object> processed = new ArrayList<Object>(items.size());
+		for(int i = 0; i < results.length; i++) {
+			if(failures[i] != null) {
+				skipped.add(failures[i]);
+			} else if(results[i] == null) {
+				filtered++;
+			} else {
+				processed.add(results[i]);
+			}
+		}
+		return processed;
+	}
+
+	/**
+	 * Adds the items left out of the last processed chunk to the filter and
+	 * process skip counts of the step execution running on this thread, if any,
+	 * and to the metrics, and takes them off the write counts: the runtime and
+	 * the ItemWriteMetricsListener count every item handed to the writer. Called
+	 * once the chunk is written, so that a retried chunk is only counted once.
+	 *
+	 * @throws SkipLimitExceededException when the step skipped more than
+	 *             skipLimit items
+	 */
+	public void countSkipped() {
+		final int leftOut = filtered + skipped.size();
+		if(metrics != null) {
+			metrics.itemsFiltered.add(filtered);
+			metrics.processSkips.add(skipped.size());
+			metrics.itemsWritten.add(-leftOut);
+		}
+		final org.springframework.batch.core.scope.context.StepContext context = StepSynchronizationManager
+				.getContext();
+		if(context == null || leftOut == 0) {
+			return;
+		}
+		final StepExecution stepExecution = context.getStepExecution();
+		stepExecution.setFilterCount(stepExecution.getFilterCount() + filtered);
+		stepExecution.setProcessSkipCount(stepExecution.getProcessSkipCount() + skipped.size());
+		stepExecution.setWriteCount(stepExecution.getWriteCount() - leftOut);
+		if(skipLimit >= 0 && stepExecution.getSkipCount() > skipLimit) {
+			throw new SkipLimitExceededException(skipLimit, skipped.get(skipped.size() - 1));
+		}
+	}
+
+	/**
+	 * Items of the last processed chunk that were filtered out
+	 */
+	public int getFiltered() {
+		return filtered;
+	}
+
+	/**
+	 * Failures of the items of the last processed chunk that were rejected
+	 */
+	public List<TypeConversionException> getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * Stops the workers
+	 */
+	public void shutdown() {
+		if(workers != null) {
+			workers.shutdown();
+		}
+	}
+
+	private void processSlice(List<Object> items, int from, int to, Object[] results,
+			TypeConversionException[] failures) throws Exception {
+		for(int i = from; i < to; i++) {
+			final long start = System.nanoTime();
+			try {
+				results[i] = processor.processItem(items.get(i));
+			} catch(TypeConversionException e) {
+				failures[i] = e;
+			}
+			if(metrics != null) {
+				metrics.process.recordNanos(System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * First item of the given slice, or the size of the chunk after the last
+	 * slice
+	 */
+	private static int bound(int slice, int slices, int size) {
+		return (int) ((long) size * slice / slices);
+	}
+}
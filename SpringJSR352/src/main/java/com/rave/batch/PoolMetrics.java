@@ -0,0 +1,152 @@
+package com.rave.batch;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Connection wait and usage times of a HikariCP pool, along with its active,
+ * idle and pending counts. Each pool is registered as an MBean named
+ * <code>com.rave.batch:type=PoolMetrics,pool=...</code> until it is closed.
+ *
+ * Set an instance of the nested Factory as the metricsTrackerFactory of the
+ * pool configuration.
+ */
+public class PoolMetrics implements IMetricsTracker, PoolMetricsMBean {
+
+	private final String poolName;
+	private final PoolStats poolStats;
+
+	private final LatencyHistogram wait = new LatencyHistogram();
+	private final LatencyHistogram usage = new LatencyHistogram();
+	private final LongAdder timeouts = new LongAdder();
+
+	PoolMetrics(String poolName, PoolStats poolStats) {
+		this.poolName = poolName;
+		this.poolStats = poolStats;
+	}
+
+	@Override
+	public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+		wait.recordNanos(elapsedAcquiredNanos);
+	}
+
+	@Override
+	public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+		usage.record(elapsedBorrowedMillis);
+	}
+
+	@Override
+	public void recordConnectionTimeout() {
+		timeouts.increment();
+	}
+
+	@Override
+	public void close() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(poolName));
+		} catch (JMException e) {
+			System.out.println("Pool metrics of " + poolName + " not unregistered : " + e);
+		}
+	}
+
+	@Override
+	public String getPoolName() {
+		return poolName;
+	}
+
+	@Override
+	public int getActiveConnections() {
+		return poolStats.getActiveConnections();
+	}
+
+	@Override
+	public int getIdleConnections() {
+		return poolStats.getIdleConnections();
+	}
+
+	@Override
+	public int getTotalConnections() {
+		return poolStats.getTotalConnections();
+	}
+
+	@Override
+	public int getMaxConnections() {
+		return poolStats.getMaxConnections();
+	}
+
+	@Override
+	public int getPendingThreads() {
+		return poolStats.getPendingThreads();
+	}
+
+	@Override
+	public long getConnectionsAcquired() {
+		return wait.getCount();
+	}
+
+	@Override
+	public long getConnectionTimeouts() {
+		return timeouts.sum();
+	}
+
+	@Override
+	public long getWaitP50Micros() {
+		return wait.getPercentile(50);
+	}
+
+	@Override
+	public long getWaitP99Micros() {
+		return wait.getPercentile(99);
+	}
+
+	@Override
+	public long getWaitMaxMicros() {
+		return wait.getMax();
+	}
+
+	@Override
+	public long getUsageP50Millis() {
+		return usage.getPercentile(50);
+	}
+
+	@Override
+	public long getUsageP99Millis() {
+		return usage.getPercentile(99);
+	}
+
+	@Override
+	public String toString() {
+		return "PoolMetrics [" + poolName + " active=" + getActiveConnections() + " idle=" + getIdleConnections()
+				+ " pending=" + getPendingThreads() + " acquired=" + getConnectionsAcquired() + " timeouts="
+				+ getConnectionTimeouts() + " wait p50/p99/max=" + getWaitP50Micros() + "/" + getWaitP99Micros() + "/"
+				+ getWaitMaxMicros() + "us]";
+	}
+
+	private static ObjectName objectName(String poolName) throws JMException {
+		return new ObjectName("com.rave.batch:type=PoolMetrics,pool=" + ObjectName.quote(poolName));
+	}
+
+	/**
+	 * Creates and registers the PoolMetrics of each pool
+	 */
+	public static class Factory implements MetricsTrackerFactory {
+
+		@Override
+		public IMetricsTracker create(String poolName, PoolStats poolStats) {
+			final PoolMetrics metrics = new PoolMetrics(poolName, poolStats);
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName(poolName));
+			} catch (JMException e) {
+				System.out.println("Pool metrics of " + poolName + " not registered : " + e);
+			}
+			return metrics;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.rave.batch;
+
+/**
+ * JMX view of the PoolMetrics of a connection pool. Wait times are in
+ * microseconds.
+ */
+public interface PoolMetricsMBean {
+
+	String getPoolName();
+
+	int getActiveConnections();
+
+	int getIdleConnections();
+
+	int getTotalConnections();
+
+	int getMaxConnections();
+
+	int getPendingThreads();
+
+	long getConnectionsAcquired();
+
+	long getConnectionTimeouts();
+
+	long getWaitP50Micros();
+
+	long getWaitP99Micros();
+
+	long getWaitMaxMicros();
+
+	long getUsageP50Millis();
+
+	long getUsageP99Millis();
+}
@@ -0,0 +1,46 @@
+package com.rave.batch;
+
+import javax.batch.api.chunk.ItemProcessor;
+
+import org.beanio.types.TypeConversionException;
+
+import com.rave.model.Report;
+import com.rave.model.TypedReport;
+
+/**
+ * Validates the reports. The writers run it over each chunk on their own
+ * worker pool, see ParallelChunkProcessor, but it can also be the processor
+ * of a step. An invalid report fails with a TypeConversionException.
+ */
+public class ReportProcessor implements ItemProcessor {
+
+	private static final EpochDayTypeHandler DATE_HANDLER = new EpochDayTypeHandler();
+	private static final GroupedLongTypeHandler NUMBER_HANDLER = new GroupedLongTypeHandler();
+	private static final CentsTypeHandler AMOUNT_HANDLER = new CentsTypeHandler();
+
+	/**
+	 * Checks that the date, counters and amount of a Report parse, and that the
+	 * counters of a TypedReport are not negative. The item is not modified,
+	 * RAW_REPORT gets the values as they were read.
+	 *
+	 * @return the item to write, or null to filter it out
+	 */
+	@Override
+	public Object processItem(Object item) throws TypeConversionException {
+		if(item instanceof Report) {
+			final Report report = (Report) item;
+			if(DATE_HANDLER.parse(report.getDate()) == null) {
+				throw new TypeConversionException("Report without date");
+			}
+			NUMBER_HANDLER.parse(report.getImpressions());
+			NUMBER_HANDLER.parse(report.getClicks());
+			AMOUNT_HANDLER.parse(report.getEarning());
+		} else if(item instanceof TypedReport) {
+			final TypedReport report = (TypedReport) item;
+			if(report.getImpressions() < 0 || report.getClicks() < 0) {
+				throw new TypeConversionException("Negative counter in " + report);
+			}
+		}
+		return item;
+	}
+}
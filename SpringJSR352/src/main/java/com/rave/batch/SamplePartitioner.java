@@ -1,24 +1,261 @@
 package com.rave.batch;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.batch.api.BatchProperty;
 import javax.batch.api.partition.PartitionMapper;
 import javax.batch.api.partition.PartitionPlan;
 import javax.batch.api.partition.PartitionPlanImpl;
-import javax.batch.runtime.context.StepContext;
 import javax.inject.Inject;
 
+/**
+ * Splits the input files into byte ranges aligned to line boundaries, one per
+ * partition. Each partition gets the <code>filePath</code>,
+ * <code>startOffset</code> and <code>endOffset</code> of its range as partition
+ * properties, to be handed to its own BeanIOItemReader.
+ *
+ * <code>filePath</code> is a file, a directory whose files are all read, or a
+ * glob pattern such as <code>/data/reports/2014-*.csv</code> or
+ * <code>/data/reports/**.csv</code>. Every file gets at least one partition,
+ * large files are split so that the partitions hold about the same number of
+ * bytes. The partitions are ordered largest first and run on at most
+ * <code>numberOfPartitions</code> threads. Each partition checkpoints its own
+ * range, so a restart only reads again the partitions that did not complete.
+ * The files must not change between a failed run and its restart.
+ *
+ * Records must not span lines (no quoted line breaks) for the ranges to be valid.
+ * Compressed files cannot be read from the middle, they get a single partition.
+ */
 public class SamplePartitioner implements PartitionMapper {
 
+	public static final String FILE_PATH = "filePath";
+	public static final String START_OFFSET = "startOffset";
+	public static final String END_OFFSET = "endOffset";
+
+	/**
+	 * Default minimum size of a partition in bytes
+	 */
+	public static final long DEFAULT_MIN_PARTITION_SIZE = 1024 * 1024;
+
+	/**
+	 * The file, directory or glob pattern of the files to split
+	 */
+	@Inject
+	@BatchProperty
+	private String filePath;
+
+	/**
+	 * Maximum number of partitions run at once, and of partitions per file. If not
+	 * provided, the number of available processors
+	 */
 	@Inject
-	private StepContext stepContext;
-	
+	@BatchProperty
+	private String numberOfPartitions;
+
+	/**
+	 * Minimum number of bytes in a partition, smaller files get fewer partitions
+	 */
+	@Inject
+	@BatchProperty
+	private String minPartitionSize;
+
 	@Override
 	public PartitionPlan mapPartitions() throws Exception {
-		
-		stepContext.setPersistentUserData("hello");
+
+		if(isEmpty(filePath)) {
+			throw new IllegalArgumentException("File path cannot be empty");
+		}
+
+		final int maxPartitions = isEmpty(numberOfPartitions) ? Runtime.getRuntime().availableProcessors()
+				: Integer.parseInt(numberOfPartitions.trim());
+		final long minSize = isEmpty(minPartitionSize) ? DEFAULT_MIN_PARTITION_SIZE
+				: Long.parseLong(minPartitionSize.trim());
+		if(maxPartitions < 1 || minSize < 1) {
+			throw new IllegalArgumentException("numberOfPartitions and minPartitionSize must be positive");
+		}
+
+		final List<File> files = findFiles(filePath);
+		long totalLength = 0;
+		for(File file : files) {
+			totalLength += file.length();
+		}
+		// bytes per partition, so that all the files together fill the threads
+		final long partitionSize = Math.max(minSize, (totalLength + maxPartitions - 1) / maxPartitions);
+
+		final List<Range> ranges = new ArrayList<Range>();
+		for(File file : files) {
+			final List<Long> boundaries = CompressedInput.isCompressed(file) ? Arrays.asList(0L, Long.MAX_VALUE)
+					: findBoundaries(file, partitionsOf(file.length(), partitionSize, minSize, maxPartitions));
+			for(int i = 0; i < boundaries.size() - 1; i++) {
+				ranges.add(new Range(file, boundaries.get(i), boundaries.get(i + 1)));
+			}
+		}
+		// largest first, the small ones fill the threads at the end
+		Collections.sort(ranges, new Comparator<Range>() {
+
+			@Override
+			public int compare(Range r1, Range r2) {
+				return Long.compare(r2.length(), r1.length());
+			}
+		});
+
+		final Properties[] partitionProperties = new Properties[ranges.size()];
+		for(int i = 0; i < partitionProperties.length; i++) {
+			final Range range = ranges.get(i);
+			partitionProperties[i] = new Properties();
+			partitionProperties[i].setProperty(FILE_PATH, range.file.getPath());
+			partitionProperties[i].setProperty(START_OFFSET, String.valueOf(range.start));
+			partitionProperties[i].setProperty(END_OFFSET, String.valueOf(range.end));
+		}
+
 		PartitionPlan plan = new PartitionPlanImpl();
-		plan.setPartitions(1);
-		plan.setPartitionProperties(null);
+		plan.setPartitions(partitionProperties.length);
+		plan.setThreads(Math.min(partitionProperties.length, maxPartitions));
+		plan.setPartitionProperties(partitionProperties);
 		return plan;
 	}
 
+	/**
+	 * Number of ranges of a file: enough ranges of at most partitionSize bytes to
+	 * cover it, but no range under minSize bytes and at most maxPartitions
+	 */
+	static int partitionsOf(long length, long partitionSize, long minSize, int maxPartitions) {
+		final long covering = (length + partitionSize - 1) / partitionSize;
+		return (int) Math.max(1, Math.min(maxPartitions, Math.min(covering, length / minSize)));
+	}
+
+	/**
+	 * Files to read, sorted by path: the file, the files of the directory, or the
+	 * files matching the glob pattern
+	 */
+	static List<File> findFiles(String filePath) throws Exception {
+		final List<Path> paths;
+		final int glob = indexOfGlob(filePath);
+		if(glob >= 0) {
+			// the pattern applies to the paths under the last directory before it
+			final int separator = Math.max(filePath.lastIndexOf('/', glob), filePath.lastIndexOf(File.separatorChar, glob));
+			final Path directory = Paths.get(separator < 0 ? "." : filePath.substring(0, separator + 1));
+			final PathMatcher matcher = directory.getFileSystem().getPathMatcher("glob:" + filePath.substring(separator + 1));
+			try (Stream<Path> found = Files.walk(directory)) {
+				paths = found.filter(path -> Files.isRegularFile(path) && matcher.matches(directory.relativize(path)))
+						.collect(Collectors.toList());
+			}
+		} else {
+			final File file = BeanIOItemReader.getFileForProcessing(filePath);
+			if(file.isDirectory()) {
+				try (Stream<Path> found = Files.list(file.toPath())) {
+					paths = found.filter(path -> Files.isRegularFile(path) && !path.getFileName().toString().startsWith("."))
+							.collect(Collectors.toList());
+				}
+			} else {
+				paths = Collections.singletonList(file.toPath());
+			}
+		}
+		if(paths.isEmpty()) {
+			throw new IllegalArgumentException("No file to read in " + filePath);
+		}
+
+		final List<File> files = new ArrayList<File>(paths.size());
+		for(Path path : paths) {
+			files.add(path.toFile());
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	private static int indexOfGlob(String filePath) {
+		for(int i = 0; i < filePath.length(); i++) {
+			if("*?[{".indexOf(filePath.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the start offsets of the ranges followed by the file length. Each
+	 * boundary is moved forward to the start of the next line, ranges that become
+	 * empty are dropped.
+	 */
+	private static List<Long> findBoundaries(File file, int partitions) throws IOException {
+
+		final long length = file.length();
+		final List<Long> boundaries = new ArrayList<Long>(partitions + 1);
+		boundaries.add(0L);
+
+		final RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			final byte[] buffer = new byte[8192];
+			for(int i = 1; i < partitions; i++) {
+				final long boundary = nextLineStart(in, buffer, i * (length / partitions));
+				if(boundary > boundaries.get(boundaries.size() - 1) && boundary < length) {
+					boundaries.add(boundary);
+				}
+			}
+		} finally {
+			in.close();
+		}
+
+		boundaries.add(length);
+		return boundaries;
+	}
+
+	/**
+	 * Offset of the first line starting at or after the given offset
+	 */
+	private static long nextLineStart(RandomAccessFile in, byte[] buffer, long offset) throws IOException {
+		long position = offset - 1;
+		in.seek(position);
+		int count;
+		while((count = in.read(buffer)) > 0) {
+			for(int i = 0; i < count; i++) {
+				if(buffer[i] == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += count;
+		}
+		return in.length();
+	}
+
+	private static boolean isEmpty(String value) {
+		return value == null || value.trim().length() == 0;
+	}
+
+	/**
+	 * Byte range of a file read by one partition
+	 */
+	private static final class Range {
+
+		final File file;
+		final long start;
+		final long end;
+
+		Range(File file, long start, long end) {
+			this.file = file;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Length of the range, the compressed length for a compressed file
+		 */
+		long length() {
+			return Math.min(end, file.length()) - start;
+		}
+	}
 }
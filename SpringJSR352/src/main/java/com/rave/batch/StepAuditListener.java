@@ -0,0 +1,56 @@
+package com.rave.batch;
+
+import javax.batch.api.listener.StepListener;
+import javax.batch.runtime.Metric;
+import javax.batch.runtime.context.JobContext;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Publishes the start and end of each step, or partition, to the AuditSink.
+ * The end event carries the step metrics (read, write, commit counts ...).
+ */
+public class StepAuditListener implements StepListener {
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Inject
+	private JobContext jobContext;
+
+	@Inject
+	private StepContext stepContext;
+
+	@Override
+	public void beforeStep() throws Exception {
+		publish(AuditEvent.STEP_START, null);
+	}
+
+	@Override
+	public void afterStep() throws Exception {
+		final StringBuilder detail = new StringBuilder();
+		if(stepContext.getExitStatus() != null) {
+			detail.append(stepContext.getExitStatus());
+		}
+		for(Metric metric : stepContext.getMetrics()) {
+			if(metric.getValue() != 0) {
+				detail.append(detail.length() == 0 ? "" : " ").append(metric.getType()).append('=')
+						.append(metric.getValue());
+			}
+		}
+		publish(AuditEvent.STEP_END, detail.toString());
+	}
+
+	private void publish(String event, String detail) {
+		AuditSink.getInstance(dataSource, transactionManager).publish(new AuditEvent(event, jobContext.getJobName(),
+				jobContext.getExecutionId(), stepContext.getStepName(), String.valueOf(stepContext.getBatchStatus()),
+				detail));
+	}
+}
@@ -0,0 +1,226 @@
+package com.rave.batch;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of one step, or one partition of a partitioned step,
+ * recorded by the ChunkMetricsListener, ItemReadMetricsListener,
+ * ItemProcessMetricsListener and ItemWriteMetricsListener. Instances are
+ * obtained from the MetricsRegistry.
+ */
+public class StepMetrics implements StepMetricsMBean {
+
+	static final String CSV_HEADER = "timestamp,job,execution,step,itemsRead,itemsWritten,itemsFiltered,chunks,"
+			+ "rollbacks,readErrors,processErrors,writeErrors,readSkips,processSkips,writeSkips,readRetries,"
+			+ "processRetries,writeRetries,itemsWrittenPerSecond,readP50Micros,readP99Micros,readMaxMicros,"
+			+ "processP50Micros,processP99Micros,processMaxMicros,writeP50Micros,writeP99Micros,writeMaxMicros,"
+			+ "chunkP50Micros,chunkP99Micros,chunkMaxMicros";
+
+	private final String jobName;
+	private final long jobExecutionId;
+	private final String stepName;
+	private final long startNanos = System.nanoTime();
+
+	final LatencyHistogram read = new LatencyHistogram();
+	final LatencyHistogram process = new LatencyHistogram();
+	final LatencyHistogram write = new LatencyHistogram();
+	final LatencyHistogram chunk = new LatencyHistogram();
+
+	final LongAdder itemsWritten = new LongAdder();
+	final LongAdder itemsFiltered = new LongAdder();
+	final LongAdder rollbacks = new LongAdder();
+	final LongAdder readErrors = new LongAdder();
+	final LongAdder processErrors = new LongAdder();
+	final LongAdder writeErrors = new LongAdder();
+	final LongAdder readSkips = new LongAdder();
+	final LongAdder processSkips = new LongAdder();
+	final LongAdder writeSkips = new LongAdder();
+	final LongAdder readRetries = new LongAdder();
+	final LongAdder processRetries = new LongAdder();
+	final LongAdder writeRetries = new LongAdder();
+
+	StepMetrics(String jobName, long jobExecutionId, String stepName) {
+		this.jobName = jobName;
+		this.jobExecutionId = jobExecutionId;
+		this.stepName = stepName;
+	}
+
+	@Override
+	public String getJobName() {
+		return jobName;
+	}
+
+	@Override
+	public long getJobExecutionId() {
+		return jobExecutionId;
+	}
+
+	@Override
+	public String getStepName() {
+		return stepName;
+	}
+
+	@Override
+	public long getItemsRead() {
+		return read.getCount();
+	}
+
+	@Override
+	public long getItemsWritten() {
+		return itemsWritten.sum();
+	}
+
+	@Override
+	public long getItemsFiltered() {
+		return itemsFiltered.sum();
+	}
+
+	@Override
+	public long getChunks() {
+		return chunk.getCount();
+	}
+
+	@Override
+	public long getRollbacks() {
+		return rollbacks.sum();
+	}
+
+	@Override
+	public long getReadErrors() {
+		return readErrors.sum();
+	}
+
+	@Override
+	public long getProcessErrors() {
+		return processErrors.sum();
+	}
+
+	@Override
+	public long getWriteErrors() {
+		return writeErrors.sum();
+	}
+
+	@Override
+	public long getReadSkips() {
+		return readSkips.sum();
+	}
+
+	@Override
+	public long getProcessSkips() {
+		return processSkips.sum();
+	}
+
+	@Override
+	public long getWriteSkips() {
+		return writeSkips.sum();
+	}
+
+	@Override
+	public long getReadRetries() {
+		return readRetries.sum();
+	}
+
+	@Override
+	public long getProcessRetries() {
+		return processRetries.sum();
+	}
+
+	@Override
+	public long getWriteRetries() {
+		return writeRetries.sum();
+	}
+
+	@Override
+	public long getItemsWrittenPerSecond() {
+		final long elapsed = System.nanoTime() - startNanos;
+		return elapsed == 0 ? 0 : itemsWritten.sum() * 1000000000L / elapsed;
+	}
+
+	@Override
+	public long getReadP50Micros() {
+		return read.getPercentile(50);
+	}
+
+	@Override
+	public long getReadP99Micros() {
+		return read.getPercentile(99);
+	}
+
+	@Override
+	public long getReadMaxMicros() {
+		return read.getMax();
+	}
+
+	@Override
+	public long getProcessP50Micros() {
+		return process.getPercentile(50);
+	}
+
+	@Override
+	public long getProcessP99Micros() {
+		return process.getPercentile(99);
+	}
+
+	@Override
+	public long getProcessMaxMicros() {
+		return process.getMax();
+	}
+
+	@Override
+	public long getWriteP50Micros() {
+		return write.getPercentile(50);
+	}
+
+	@Override
+	public long getWriteP99Micros() {
+		return write.getPercentile(99);
+	}
+
+	@Override
+	public long getWriteMaxMicros() {
+		return write.getMax();
+	}
+
+	@Override
+	public long getChunkP50Micros() {
+		return chunk.getPercentile(50);
+	}
+
+	@Override
+	public long getChunkP99Micros() {
+		return chunk.getPercentile(99);
+	}
+
+	@Override
+	public long getChunkMaxMicros() {
+		return chunk.getMax();
+	}
+
+	/**
+	 * Row of the metrics matching CSV_HEADER
+	 */
+	String toCsv(long timestamp) {
+		return timestamp + "," + jobName + "," + jobExecutionId + ",\"" + stepName + "\"," + getItemsRead() + ","
+				+ getItemsWritten() + "," + getItemsFiltered() + "," + getChunks() + "," + getRollbacks() + ","
+				+ getReadErrors() + "," + getProcessErrors() + "," + getWriteErrors() + "," + getReadSkips() + ","
+				+ getProcessSkips() + "," + getWriteSkips() + "," + getReadRetries() + "," + getProcessRetries()
+				+ "," + getWriteRetries() + "," + getItemsWrittenPerSecond() + "," + getReadP50Micros() + ","
+				+ getReadP99Micros() + "," + getReadMaxMicros() + "," + getProcessP50Micros() + ","
+				+ getProcessP99Micros() + "," + getProcessMaxMicros() + "," + getWriteP50Micros() + ","
+				+ getWriteP99Micros() + "," + getWriteMaxMicros() + "," + getChunkP50Micros() + ","
+				+ getChunkP99Micros() + "," + getChunkMaxMicros();
+	}
+
+	@Override
+	public String toString() {
+		return "StepMetrics [" + jobName + "/" + jobExecutionId + "/" + stepName + " read=" + getItemsRead()
+				+ " written=" + getItemsWritten() + " (" + getItemsWrittenPerSecond() + "/s) filtered="
+				+ getItemsFiltered() + " chunks=" + getChunks() + " rollbacks=" + getRollbacks() + " skips="
+				+ getReadSkips() + "/" + getProcessSkips() + "/" + getWriteSkips() + " retries=" + getReadRetries()
+				+ "/" + getProcessRetries() + "/" + getWriteRetries() + " errors=" + getReadErrors() + "/"
+				+ getProcessErrors() + "/" + getWriteErrors() + " read p50/p99/max=" + getReadP50Micros() + "/"
+				+ getReadP99Micros() + "/" + getReadMaxMicros() + "us process=" + getProcessP50Micros() + "/"
+				+ getProcessP99Micros() + "/" + getProcessMaxMicros() + "us write=" + getWriteP50Micros() + "/" + getWriteP99Micros() + "/" + getWriteMaxMicros()
+				+ "us chunk=" + getChunkP50Micros() + "/" + getChunkP99Micros() + "/" + getChunkMaxMicros() + "us]";
+	}
+}
@@ -0,0 +1,68 @@
+package com.rave.batch;
+
+/**
+ * JMX view of the StepMetrics of a running step or partition. Latencies are in
+ * microseconds.
+ */
+public interface StepMetricsMBean {
+
+	String getJobName();
+
+	long getJobExecutionId();
+
+	String getStepName();
+
+	long getItemsRead();
+
+	long getItemsWritten();
+
+	long getItemsFiltered();
+
+	long getChunks();
+
+	long getRollbacks();
+
+	long getReadErrors();
+
+	long getProcessErrors();
+
+	long getWriteErrors();
+
+	long getReadSkips();
+
+	long getProcessSkips();
+
+	long getWriteSkips();
+
+	long getReadRetries();
+
+	long getProcessRetries();
+
+	long getWriteRetries();
+
+	long getItemsWrittenPerSecond();
+
+	long getReadP50Micros();
+
+	long getReadP99Micros();
+
+	long getReadMaxMicros();
+
+	long getProcessP50Micros();
+
+	long getProcessP99Micros();
+
+	long getProcessMaxMicros();
+
+	long getWriteP50Micros();
+
+	long getWriteP99Micros();
+
+	long getWriteMaxMicros();
+
+	long getChunkP50Micros();
+
+	long getChunkP99Micros();
+
+	long getChunkMaxMicros();
+}
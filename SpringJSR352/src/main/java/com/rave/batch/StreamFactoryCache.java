@@ -0,0 +1,107 @@
+package com.rave.batch;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.beanio.StreamFactory;
+
+/**
+ * Compiled BeanIO stream factories, one per mapping file and JVM. A mapping
+ * file is compiled again only when its modification time changes. A loaded
+ * StreamFactory is thread safe, so the readers of all the partitions share it.
+ *
+ * The hits and misses are registered as the MBean
+ * <code>com.rave.batch:type=StreamFactoryCache</code>.
+ */
+public final class StreamFactoryCache implements StreamFactoryCacheMBean {
+
+	private static final ConcurrentMap<String, CachedFactory> FACTORIES = new ConcurrentHashMap<String, CachedFactory>();
+
+	private static final AtomicLong HITS = new AtomicLong();
+	private static final AtomicLong MISSES = new AtomicLong();
+
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StreamFactoryCache(),
+					new ObjectName("com.rave.batch:type=StreamFactoryCache"));
+		} catch (JMException e) {
+			System.out.println("Stream factory cache not registered : " + e);
+		}
+	}
+
+	private StreamFactoryCache() {
+	}
+
+	/**
+	 * Returns the stream factory of the mapping file, compiling it on first use
+	 */
+	public static StreamFactory get(String mappingFilePath) {
+		final long lastModified = new File(mappingFilePath).lastModified();
+
+		final CachedFactory cached = FACTORIES.get(mappingFilePath);
+		if(cached != null && cached.lastModified == lastModified) {
+			HITS.incrementAndGet();
+			return cached.factory;
+		}
+
+		// compute blocks other readers of the same mapping until it is compiled
+		return FACTORIES.compute(mappingFilePath, (path, current) -> {
+			if(current != null && current.lastModified == lastModified) {
+				HITS.incrementAndGet();
+				return current;
+			}
+			MISSES.incrementAndGet();
+			final StreamFactory factory = StreamFactory.newInstance();
+			factory.load(path);
+			return new CachedFactory(factory, lastModified);
+		}).factory;
+	}
+
+	/**
+	 * Number of compiled mappings
+	 */
+	@Override
+	public int getMappings() {
+		return FACTORIES.size();
+	}
+
+	/**
+	 * Number of lookups served by an already compiled mapping
+	 */
+	@Override
+	public long getHits() {
+		return HITS.get();
+	}
+
+	/**
+	 * Number of lookups that compiled the mapping
+	 */
+	@Override
+	public long getMisses() {
+		return MISSES.get();
+	}
+
+	/**
+	 * Drops all the compiled mappings
+	 */
+	public static void clear() {
+		FACTORIES.clear();
+	}
+
+	private static final class CachedFactory {
+
+		final StreamFactory factory;
+		final long lastModified;
+
+		CachedFactory(StreamFactory factory, long lastModified) {
+			this.factory = factory;
+			this.lastModified = lastModified;
+		}
+	}
+}
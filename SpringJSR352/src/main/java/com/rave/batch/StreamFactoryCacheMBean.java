@@ -0,0 +1,13 @@
+package com.rave.batch;
+
+/**
+ * JMX view of the StreamFactoryCache.
+ */
+public interface StreamFactoryCacheMBean {
+
+	int getMappings();
+
+	long getHits();
+
+	long getMisses();
+}
@@ -32,5 +32,11 @@ public class Report {
 		Earning = earning;
 	}
 
+	@Override
+	public String toString() {
+		return "Report [date=" + Date + ", impressions=" + Impressions + ", clicks=" + Clicks + ", earning=" + Earning
+				+ "]";
+	}
+
 	
 }
\ No newline at end of file
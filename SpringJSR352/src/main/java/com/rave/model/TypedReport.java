@@ -0,0 +1,44 @@
+package com.rave.model;
+
+/**
+ * Report with typed, primitive columns: the date as days since 1970-01-01,
+ * the counters as longs and the earnings in cents.
+ */
+public class TypedReport {
+
+	private int day;
+	private long impressions;
+	private long clicks;
+	private long earningCents;
+
+	public int getDay() {
+		return day;
+	}
+	public void setDay(int day) {
+		this.day = day;
+	}
+	public long getImpressions() {
+		return impressions;
+	}
+	public void setImpressions(long impressions) {
+		this.impressions = impressions;
+	}
+	public long getClicks() {
+		return clicks;
+	}
+	public void setClicks(long clicks) {
+		this.clicks = clicks;
+	}
+	public long getEarningCents() {
+		return earningCents;
+	}
+	public void setEarningCents(long earningCents) {
+		this.earningCents = earningCents;
+	}
+
+	@Override
+	public String toString() {
+		return "TypedReport [day=" + day + ", impressions=" + impressions + ", clicks=" + clicks
+				+ ", earningCents=" + earningCents + "]";
+	}
+}
@@ -0,0 +1,33 @@
+-- tables of db.sql for the in memory H2 database of the "embedded" profile
+create table raw_report(
+ date varchar(20),
+ impressions varchar(20),
+ clicks varchar(50),
+ earnings varchar(50)
+ );
+
+create table typed_report(
+ report_day int not null,
+ impressions bigint not null,
+ clicks bigint not null,
+ earnings_cents bigint not null
+ );
+
+create table batch_audit(
+ event_time bigint not null,
+ event varchar(20) not null,
+ job_name varchar(100) not null,
+ job_execution_id bigint not null,
+ step_name varchar(100),
+ status varchar(20),
+ detail varchar(255)
+ );
+
+create table batch_quarantine(
+ quarantine_time bigint not null,
+ job_name varchar(100) not null,
+ job_execution_id bigint not null,
+ step_name varchar(100) not null,
+ item varchar(1000) not null,
+ reason varchar(1000) not null
+ );
@@ -9,4 +9,31 @@ create table raw_report(
  earnings varchar(50)
  );
 
+-- typed columns, for the reportTypedCSVStream
+create table typed_report(
+ report_day int not null, -- days since 1970-01-01
+ impressions bigint not null,
+ clicks bigint not null,
+ earnings_cents bigint not null
+ );
+
+-- job and step lifecycle events, written by the AuditSink
+create table batch_audit(
+ event_time bigint not null, -- epoch millis
+ event varchar(20) not null,
+ job_name varchar(100) not null,
+ job_execution_id bigint not null,
+ step_name varchar(100), -- null for job events
+ status varchar(20),
+ detail varchar(255)
+ );
 
+-- items rejected by the database, isolated by the DatabaseWriter in quarantine mode
+create table batch_quarantine(
+ quarantine_time bigint not null, -- epoch millis
+ job_name varchar(100) not null,
+ job_execution_id bigint not null,
+ step_name varchar(100) not null,
+ item varchar(1000) not null,
+ reason varchar(1000) not null
+ );